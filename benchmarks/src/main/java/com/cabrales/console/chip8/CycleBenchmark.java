@@ -0,0 +1,84 @@
+package com.cabrales.console.chip8;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import com.cabrales.console.chip8.util.AudioSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Instructions per second of {@link Chip8#cycle()} on bundled ROMs, with the
+ * timers counted in cycles and no key pressed.
+ *
+ * Each ROM first runs for a while to get past its title screen, and every
+ * iteration starts again from a snapshot taken then, so all iterations
+ * measure the same stretch of the game.
+ *
+ * Run with {@code java -jar target/benchmarks.jar CycleBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CycleBenchmark {
+
+    private static final int INSTRUCTIONS = 10000;
+    private static final int BOOT_CYCLES = 20000;
+
+    @Param({"BRIX", "INVADERS", "PONG", "TETRIS"})
+    public String rom;
+
+    private Chip8 chip8;
+    private byte[] snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] memory = new byte[4096];
+        try (InputStream in = CycleBenchmark.class.getResourceAsStream("/roms/" + rom)) {
+            if (in == null) {
+                throw new IOException("No ROM " + rom);
+            }
+            int offset = 0x200;
+            int read;
+            while (offset < memory.length && (read = in.read(memory, offset, memory.length - offset)) > 0) {
+                offset += read;
+            }
+        }
+        chip8 = new Chip8(memory);
+        chip8.setAudioSink(AudioSink.NULL);
+        chip8.setKeypad(() -> 0);
+        chip8.setSeed(0);
+        chip8.setCyclesPerTick(10);
+        chip8.run(BOOT_CYCLES);
+        snapshot = chip8.saveState();
+    }
+
+    @Setup(Level.Iteration)
+    public void restore() {
+        chip8.restoreState(snapshot);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int cycle() {
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            chip8.cycle();
+        }
+        return chip8.getPc();
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.cabrales.console.chip8;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares decoding instructions with the nested opcode switch against the
+ * pre-decoded lookup table used by {@link Chip8#execute(int)}, and executing
+ * them through the original nested switch, kept in {@link BaselineChip8},
+ * against the table driven {@link Chip8#execute(int)}.
+ *
+ * Run with {@code java -jar target/benchmarks.jar DecodeBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    /**
+     * A mix of instructions touching every opcode group, including the second
+     * level switches of the 0x8000, 0xE000 and 0xF000 groups.
+     */
+    private static final int[] MIX = new int[]{
+        0x00E0, 0x00EE, 0x1234, 0x2345, 0x3A12, 0x4B34, 0x5120, 0x6A55,
+        0x7B01, 0x8120, 0x8121, 0x8122, 0x8123, 0x8124, 0x8125, 0x8126,
+        0x8127, 0x812E, 0x9120, 0xA300, 0xB200, 0xC0FF, 0xD125, 0xE19E,
+        0xE1A1, 0xF107, 0xF10A, 0xF115, 0xF118, 0xF11E, 0xF129, 0xF133,
+        0xF155, 0xF165
+    };
+
+    /**
+     * Register only instructions which are safe to execute repeatedly.
+     */
+    private static final int[] ALU = new int[]{
+        0x6A55, 0x7B01, 0x8120, 0x8121, 0x8122, 0x8123, 0x8124, 0x8125,
+        0x8126, 0x8127, 0x812E, 0xA300, 0xF11E, 0xF129, 0x6205, 0x6312
+    };
+
+    private Chip8 chip8;
+    private BaselineChip8 baseline;
+
+    @Setup
+    public void setUp() {
+        chip8 = new Chip8();
+        baseline = new BaselineChip8();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(34)
+    public void switchDecode(Blackhole bh) {
+        for (int instruction : MIX) {
+            bh.consume(Opcodes.decode(instruction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(34)
+    public void tableDecode(Blackhole bh) {
+        for (int instruction : MIX) {
+            bh.consume(Opcodes.lookup(instruction));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int switchExecute() {
+        for (int instruction : ALU) {
+            baseline.execute(instruction);
+        }
+        return baseline.getVF();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int tableExecute() {
+        for (int instruction : ALU) {
+            chip8.execute(instruction);
+        }
+        return chip8.getVF();
+    }
+
+}
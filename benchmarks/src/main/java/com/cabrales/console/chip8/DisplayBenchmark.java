@@ -0,0 +1,107 @@
+package com.cabrales.console.chip8;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sprite drawing with DXYN and the ways of reading the display out.
+ *
+ * Sixteen 8x15 sprites tile the whole display. Without collisions the display
+ * is cleared first, so the time includes one 00E0. With collisions the
+ * display holds a checkerboard and a solid sprite is drawn over it, which
+ * collides every time and leaves the inverted checkerboard for the next
+ * draw.
+ *
+ * Run with {@code java -jar target/benchmarks.jar DisplayBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DisplayBenchmark {
+
+    private static final int SOLID = 0x300;
+    private static final int CHECKERBOARD = 0x310;
+
+    private Chip8 blank;
+    private Chip8 drawn;
+    private Chip8 idle;
+
+    @Setup
+    public void setUp() {
+        byte[] memory = new byte[4096];
+        for (int row = 0; row < 15; row++) {
+            memory[SOLID + row] = (byte) 0xFF;
+            memory[CHECKERBOARD + row] = (byte) (row % 2 == 0 ? 0xAA : 0x55);
+        }
+        blank = new Chip8(memory.clone());
+        blank.execute(0xA000 | SOLID);
+        drawn = new Chip8(memory.clone());
+        drawn.execute(0xA000 | CHECKERBOARD);
+        tile(drawn);
+        drawn.execute(0xA000 | SOLID);
+        idle = new Chip8(memory.clone());
+        idle.execute(0xA000 | CHECKERBOARD);
+        tile(idle);
+        idle.getDisplayView();
+    }
+
+    private static int tile(Chip8 chip8) {
+        int collisions = 0;
+        for (int y = 0; y < 32; y += 16) {
+            for (int x = 0; x < 64; x += 8) {
+                chip8.setVX(x, 0);
+                chip8.setVX(y, 1);
+                chip8.execute(0xD01F);
+                collisions += chip8.getVF();
+            }
+        }
+        return collisions;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int drawNoCollision() {
+        blank.execute(0x00E0);
+        return tile(blank);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int drawCollision() {
+        return tile(drawn);
+    }
+
+    @Benchmark
+    public byte[] getDisplay() {
+        return idle.getDisplay();
+    }
+
+    /**
+     * The view is only unpacked again after the display changed.
+     */
+    @Benchmark
+    public ByteBuffer getDisplayViewUnchanged() {
+        return idle.getDisplayView();
+    }
+
+    @Benchmark
+    public ByteBuffer getDisplayViewChanged() {
+        drawn.execute(0xD01F);
+        return drawn.getDisplayView();
+    }
+
+}
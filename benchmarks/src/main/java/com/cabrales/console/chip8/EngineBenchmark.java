@@ -0,0 +1,82 @@
+package com.cabrales.console.chip8;
+
+import java.util.concurrent.TimeUnit;
+import com.cabrales.console.chip8.test.TestPrograms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Instructions per second of the interpreter against the block and compiled
+ * engines on a tight counting loop, with the timers counted in cycles.
+ *
+ * Run with {@code java -jar target/benchmarks.jar EngineBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EngineBenchmark {
+
+    private static final int INSTRUCTIONS = 10000;
+
+    private static final int[] LOOP = new int[]{
+        0x6000, // 200: V0 = 0
+        0x7001, // 202: V0 += 1
+        0x8104, // 204: V1 += V0
+        0x8213, // 206: V2 ^= V1
+        0x8326, // 208: V3 = V3 >> 1
+        0x3000, // 20A: Skip if V0 == 0
+        0x1202, // 20C: JP 202
+        0x1200  // 20E: JP 200
+    };
+
+    private Chip8 interpreted;
+    private Chip8 cached;
+    private BlockEngine engine;
+    private Chip8 translated;
+    private CompiledEngine compiledEngine;
+
+    @Setup
+    public void setUp() {
+        interpreted = TestPrograms.load(LOOP, 10);
+        cached = TestPrograms.load(LOOP, 10);
+        engine = new BlockEngine(cached);
+        translated = TestPrograms.load(LOOP, 10);
+        compiledEngine = new CompiledEngine(translated);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int interpreter() {
+        for (int i = 0; i < INSTRUCTIONS; i++) {
+            interpreted.cycle();
+        }
+        return interpreted.getV1();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int blockEngine() {
+        engine.run(INSTRUCTIONS);
+        return cached.getV1();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int compiledEngine() {
+        compiledEngine.run(INSTRUCTIONS);
+        return translated.getV1();
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.cabrales.console.chip8;
+
+import java.util.concurrent.TimeUnit;
+import com.cabrales.console.chip8.util.AudioSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of {@link Chip8#execute(int)} per instruction, for each family of
+ * opcodes. Every family is repeated to the same number of instructions, and
+ * the instructions are chosen so they can run forever, calls are paired with
+ * returns and memory writes stay in one place.
+ *
+ * Run with {@code java -jar target/benchmarks.jar OpcodeBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OpcodeBenchmark {
+
+    private static final int INSTRUCTIONS = 64;
+
+    @Param({"alu", "flow", "memory", "timers", "keypad", "random", "display"})
+    public String family;
+
+    private Chip8 chip8;
+    private int[] instructions;
+
+    @Setup
+    public void setUp() {
+        chip8 = new Chip8();
+        chip8.setAudioSink(AudioSink.NULL);
+        chip8.setKeypad(() -> 1 << 0x3);
+        chip8.setSeed(0);
+        chip8.setCyclesPerTick(10);
+        chip8.execute(0xA300);
+        int[] mix = mix(family);
+        instructions = new int[INSTRUCTIONS];
+        for (int i = 0; i < instructions.length; i++) {
+            instructions[i] = mix[i % mix.length];
+        }
+    }
+
+    private static int[] mix(String family) {
+        switch (family) {
+            case "alu":
+                return new int[]{
+                    0x6A55, 0x7B01, 0x8120, 0x8121, 0x8122, 0x8123, 0x8124, 0x8125,
+                    0x8126, 0x8127, 0x812E, 0x6205, 0x6312, 0x7401, 0x8344, 0x8455
+                };
+            case "flow":
+                return new int[]{
+                    0x1200, 0x2300, 0x00EE, 0x3A55, 0x4A55, 0x5120, 0x9120, 0xB200
+                };
+            case "memory":
+                return new int[]{
+                    0xA300, 0xF11E, 0xF129, 0xA300, 0xF333, 0xF355, 0xF365, 0xA300
+                };
+            case "timers":
+                return new int[]{
+                    0xF107, 0xF115, 0xF018, 0xF207
+                };
+            case "keypad":
+                return new int[]{
+                    0x6003, 0xE09E, 0xE0A1, 0xF10A, 0x6004, 0xE09E, 0xE0A1, 0xF20A
+                };
+            case "random":
+                return new int[]{
+                    0xC0FF, 0xC13F, 0xC21F, 0xC30F
+                };
+            case "display":
+                return new int[]{
+                    0x00E0, 0x6000, 0x6100, 0xF029, 0xD015, 0x6008, 0xD015, 0xD015
+                };
+            default:
+                throw new IllegalArgumentException("Unknown opcode family " + family);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int execute() {
+        for (int instruction : instructions) {
+            chip8.execute(instruction);
+        }
+        return chip8.getVF();
+    }
+
+}
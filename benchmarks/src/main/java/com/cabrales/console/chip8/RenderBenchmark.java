@@ -0,0 +1,93 @@
+package com.cabrales.console.chip8;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import com.cabrales.console.chip8.util.Chip8DisplayPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to render one frame into an offscreen image, comparing the original
+ * setColor/fillRect per cell loop with Chip8DisplayPanel's image blit.
+ *
+ * Run with {@code java -Djava.awt.headless=true -jar target/benchmarks.jar RenderBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    @Param({"10", "20"})
+    public int scale;
+
+    private Chip8 chip8;
+    private Chip8DisplayPanel panel;
+    private BufferedImage target;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        chip8 = new Chip8();
+        // Draw every font digit over the display
+        for (int i = 0; i < 64; i++) {
+            chip8.setVX(i % 16, 0);
+            chip8.setVX((i * 5) % 64, 1);
+            chip8.setVX((i / 8) * 4, 2);
+            chip8.execute(0xF029);
+            chip8.execute(0xD125);
+        }
+        panel = new Chip8DisplayPanel();
+        panel.setChip8(chip8);
+        panel.setSize(64 * scale, 32 * scale);
+        target = new BufferedImage(64 * scale, 32 * scale, BufferedImage.TYPE_INT_RGB);
+        graphics = target.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage fillRect() {
+        int pixelWidth = scale;
+        int pixelHeight = scale;
+        byte[] video = chip8.getDisplay();
+        for (int x = 0; x < 64; x++) {
+            for (int y = 0; y < 32; y++) {
+                if (video[y * 64 + x] == 0) {
+                    graphics.setColor(Color.BLACK);
+                } else {
+                    graphics.setColor(Color.WHITE);
+                }
+                graphics.fillRect(x * pixelWidth, y * pixelHeight, pixelWidth, pixelHeight);
+            }
+        }
+        return target;
+    }
+
+    @Benchmark
+    public BufferedImage imageBlit() {
+        Graphics g = graphics;
+        panel.paint(g);
+        return target;
+    }
+
+}
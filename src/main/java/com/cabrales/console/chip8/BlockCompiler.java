@@ -0,0 +1,670 @@
+package com.cabrales.console.chip8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the JVM class file which {@link CompiledEngine} loads for a batch of
+ * basic blocks of Chip8 code.
+ *
+ * Every block becomes a static method which takes the
+ * {@link CompiledEngine.Machine} and returns the address to continue at.
+ * Inside a block the V registers and I live in local variables. They are only
+ * read from the machine the first time the block uses them and written back
+ * before an instruction handed to the interpreter and at the end of the
+ * block. Register instructions don't look at the cycle count or the timers,
+ * so those are brought up to date in one step before each interpreted
+ * instruction and at the end of the block instead of once per instruction.
+ *
+ * The class implements {@link CompiledEngine.Program} with a lookupswitch
+ * from block address to block method. It is written as class file version
+ * 49, which is verified without stack map frames.
+ */
+final class BlockCompiler {
+
+    static final int MAX_BLOCK_LENGTH = 64;
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String MACHINE = "com/cabrales/console/chip8/CompiledEngine$Machine";
+    private static final String PROGRAM = "com/cabrales/console/chip8/CompiledEngine$Program";
+    private static final String BLOCK_DESCRIPTOR = "(L" + MACHINE + ";)I";
+
+    private static final int CLASS_VERSION = 49;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // Local variable slots of a block method, slot 0 holds the machine and
+    // V0 to VF are slots 1 to 16
+    private static final int I_SLOT = 17;
+    private static final int TEMP_SLOT = 18;
+    private static final int MAX_LOCALS = 19;
+    private static final int MAX_STACK = 4;
+
+    private static final int ICONST_M1 = 0x02;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int ALOAD_1 = 0x2B;
+    private static final int ILOAD_2 = 0x1C;
+    private static final int ISTORE = 0x36;
+    private static final int IADD = 0x60;
+    private static final int ISUB = 0x64;
+    private static final int IMUL = 0x68;
+    private static final int ISHL = 0x78;
+    private static final int ISHR = 0x7A;
+    private static final int IUSHR = 0x7C;
+    private static final int IAND = 0x7E;
+    private static final int IOR = 0x80;
+    private static final int IXOR = 0x82;
+    private static final int IF_ICMPEQ = 0x9F;
+    private static final int IF_ICMPNE = 0xA0;
+    private static final int LOOKUPSWITCH = 0xAB;
+    private static final int IRETURN = 0xAC;
+    private static final int RETURN = 0xB1;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+
+    private final Chip8 chip8;
+    private final String className;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount;
+
+    private int[] blocks = new int[16];
+    private int blockCount;
+
+    // State of the block being translated
+    private Code code;
+    private final boolean[] loaded = new boolean[I_SLOT + 1];
+    private final boolean[] dirty = new boolean[I_SLOT + 1];
+    private int pending;
+
+    /**
+     * @param chip8 the machine whose memory holds the code
+     * @param className binary name of the class to write
+     */
+    BlockCompiler(Chip8 chip8, String className) {
+        this.chip8 = chip8;
+        this.className = className.replace('.', '/');
+    }
+
+    /**
+     * Translates the given number of instructions starting at an address.
+     * Only the last of them may end a block according to
+     * {@link BlockEngine#endsBlock(int)}, if none does the block continues at
+     * the address after it.
+     */
+    void addBlock(int start, int length) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, 2 * blockCount);
+        }
+        blocks[blockCount++] = start;
+        try {
+            writeBlock(start, length);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return the class file with all blocks added so far
+     */
+    byte[] toClassFile() {
+        try {
+            writeConstructor();
+            writeDispatch();
+
+            int thisClass = classRef(className);
+            int superClass = classRef(OBJECT);
+            int program = classRef(PROGRAM);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                    poolBytes.size() + methodBytes.size() + 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(program);
+            out.writeShort(0);
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeBlock(int start, int length) throws IOException {
+        code = new Code();
+        Arrays.fill(loaded, false);
+        Arrays.fill(dirty, false);
+        pending = 0;
+
+        int address = start;
+        for (int i = 0; i < length; i++) {
+            int instruction = chip8.instructionAt(address);
+            int id = Opcodes.lookup(instruction);
+            pending++;
+            if (translate(id, instruction, address)) {
+                writeMethod(ACC_PRIVATE | ACC_STATIC, blockName(start), BLOCK_DESCRIPTOR, code);
+                return;
+            }
+            address += 2;
+        }
+        sync();
+        push(address);
+        code.op(IRETURN);
+        writeMethod(ACC_PRIVATE | ACC_STATIC, blockName(start), BLOCK_DESCRIPTOR, code);
+    }
+
+    /**
+     * @return true if the instruction returned from the block
+     */
+    private boolean translate(int id, int instruction, int address) throws IOException {
+        int x = (instruction & 0x0F00) >> 8;
+        int y = (instruction & 0x00F0) >> 4;
+        int nn = instruction & 0xFF;
+        int nnn = instruction & 0xFFF;
+
+        switch (id) {
+            case Opcodes.JP:
+                sync();
+                push(nnn);
+                code.op(IRETURN);
+                return true;
+
+            case Opcodes.SE_VX_NN:
+            case Opcodes.SNE_VX_NN:
+                sync();
+                load(x);
+                push(nn);
+                skip(id == Opcodes.SE_VX_NN ? IF_ICMPNE : IF_ICMPEQ, address);
+                return true;
+
+            case Opcodes.SE_VX_VY:
+            case Opcodes.SNE_VX_VY:
+                sync();
+                load(x);
+                load(y);
+                skip(id == Opcodes.SE_VX_VY ? IF_ICMPNE : IF_ICMPEQ, address);
+                return true;
+
+            case Opcodes.LD_VX_NN:
+                push(nn);
+                store(x);
+                return false;
+
+            case Opcodes.ADD_VX_NN:
+                load(x);
+                push(nn);
+                code.op(IADD);
+                mask();
+                store(x);
+                return false;
+
+            case Opcodes.LD_VX_VY:
+                load(y);
+                store(x);
+                return false;
+
+            case Opcodes.OR:
+            case Opcodes.AND:
+            case Opcodes.XOR:
+                load(x);
+                load(y);
+                code.op(id == Opcodes.OR ? IOR : id == Opcodes.AND ? IAND : IXOR);
+                store(x);
+                return false;
+
+            case Opcodes.LD_I:
+                push(nnn);
+                store(I_SLOT);
+                return false;
+
+            case Opcodes.ADD_I_VX:
+                load(I_SLOT);
+                load(x);
+                code.op(IADD);
+                store(I_SLOT);
+                return false;
+
+            case Opcodes.LD_F_VX:
+                load(x);
+                push(5);
+                code.op(IMUL);
+                store(I_SLOT);
+                return false;
+
+            default:
+                break;
+        }
+
+        // The flag register is written in between reading and writing the
+        // operands, leave the order of that to the interpreter
+        boolean flagOperand = x == 0xF || y == 0xF;
+        switch (id) {
+            case Opcodes.ADD_VX_VY:
+                if (flagOperand) {
+                    break;
+                }
+                // VF = carry, VX = sum & 0xFF
+                load(x);
+                load(y);
+                code.op(IADD);
+                code.op(ISTORE, TEMP_SLOT);
+                code.op(ILOAD, TEMP_SLOT);
+                push(8);
+                code.op(IUSHR);
+                store(0xF);
+                code.op(ILOAD, TEMP_SLOT);
+                mask();
+                store(x);
+                return false;
+
+            case Opcodes.SUB:
+                if (flagOperand) {
+                    break;
+                }
+                // VF = VX > VY, the sign of VY - VX
+                load(y);
+                load(x);
+                code.op(ISUB);
+                push(31);
+                code.op(IUSHR);
+                store(0xF);
+                load(x);
+                load(y);
+                code.op(ISUB);
+                mask();
+                store(x);
+                return false;
+
+            case Opcodes.SUBN:
+                if (flagOperand || x == y) {
+                    break;
+                }
+                // VX = VY - VX, then VF = VY > VX of the new VX
+                load(y);
+                load(x);
+                code.op(ISUB);
+                mask();
+                store(x);
+                load(x);
+                load(y);
+                code.op(ISUB);
+                push(31);
+                code.op(IUSHR);
+                store(0xF);
+                return false;
+
+            case Opcodes.SHR:
+                if (x == 0xF) {
+                    break;
+                }
+                load(x);
+                push(1);
+                code.op(IAND);
+                store(0xF);
+                load(x);
+                push(1);
+                code.op(ISHR);
+                store(x);
+                return false;
+
+            case Opcodes.SHL:
+                if (x == 0xF) {
+                    break;
+                }
+                load(x);
+                push(7);
+                code.op(ISHR);
+                store(0xF);
+                load(x);
+                push(1);
+                code.op(ISHL);
+                mask();
+                store(x);
+                return false;
+
+            default:
+                break;
+        }
+        return interpret(id, instruction, address);
+    }
+
+    // Hands the instruction to Chip8.execute with the machine state exactly
+    // as the interpreter would have it
+    private boolean interpret(int id, int instruction, int address) throws IOException {
+        sync();
+        code.op(ALOAD_0);
+        push(address + 2);
+        invokeMachine("setPc", "(I)V", 1);
+        code.op(ALOAD_0);
+        push(id);
+        push(instruction);
+        invokeMachine("execute", "(II)V", 2);
+
+        if (BlockEngine.endsBlock(id)) {
+            code.op(ALOAD_0);
+            invokeMachine("getPc", "()I", 0);
+            code.op(IRETURN);
+            return true;
+        }
+        int x = (instruction & 0x0F00) >> 8;
+        switch (id) {
+            case Opcodes.CLS:
+            case Opcodes.LD_DT_VX:
+            case Opcodes.LD_ST_VX:
+                break;
+            case Opcodes.DRW:
+                loaded[0xF] = false;
+                break;
+            case Opcodes.RND:
+            case Opcodes.LD_VX_DT:
+                loaded[x] = false;
+                break;
+            default:
+                Arrays.fill(loaded, false);
+                break;
+        }
+        return false;
+    }
+
+    // Returns the address after the next instruction if the comparison of
+    // the two values on the stack fails and the next instruction otherwise
+    private void skip(int noSkip, int address) {
+        int branch = code.op(noSkip);
+        code.u2(0);
+        push(address + 4);
+        code.op(IRETURN);
+        code.patch(branch, code.length() - branch);
+        push(address + 2);
+        code.op(IRETURN);
+    }
+
+    // Writes back changed registers and counts the pending cycles
+    private void sync() throws IOException {
+        for (int v = 0; v < 0x10; v++) {
+            if (dirty[v]) {
+                code.op(ALOAD_0);
+                push(v);
+                code.op(ILOAD, slot(v));
+                invokeMachine("setV", "(II)V", 2);
+                dirty[v] = false;
+            }
+        }
+        if (dirty[I_SLOT]) {
+            code.op(ALOAD_0);
+            code.op(ILOAD, I_SLOT);
+            invokeMachine("setI", "(I)V", 1);
+            dirty[I_SLOT] = false;
+        }
+        if (pending > 0) {
+            code.op(ALOAD_0);
+            push(pending);
+            invokeMachine("advance", "(I)V", 1);
+            pending = 0;
+        }
+    }
+
+    // Pushes a V register, or I for I_SLOT
+    private void load(int register) throws IOException {
+        if (!loaded[register]) {
+            code.op(ALOAD_0);
+            if (register == I_SLOT) {
+                invokeMachine("getI", "()I", 0);
+            } else {
+                push(register);
+                invokeMachine("getV", "(I)I", 1);
+            }
+            code.op(ISTORE, slot(register));
+            loaded[register] = true;
+        }
+        code.op(ILOAD, slot(register));
+    }
+
+    // Pops a V register, or I for I_SLOT
+    private void store(int register) {
+        code.op(ISTORE, slot(register));
+        loaded[register] = true;
+        dirty[register] = true;
+    }
+
+    private static int slot(int register) {
+        return register == I_SLOT ? I_SLOT : register + 1;
+    }
+
+    private void mask() {
+        push(0xFF);
+        code.op(IAND);
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.op(BIPUSH, value & 0xFF);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.op(SIPUSH);
+            code.u2(value);
+        } else {
+            try {
+                code.op(LDC_W);
+                code.u2(integer(value));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private void invokeMachine(String name, String descriptor, int argumentCount) throws IOException {
+        code.op(INVOKEINTERFACE);
+        code.u2(methodRef(MACHINE, name, descriptor, true));
+        code.u1(argumentCount + 1);
+        code.u1(0);
+    }
+
+    private void writeConstructor() throws IOException {
+        Code constructor = new Code();
+        constructor.op(ALOAD_0);
+        constructor.op(INVOKESPECIAL);
+        constructor.u2(methodRef(OBJECT, "<init>", "()V", false));
+        constructor.op(RETURN);
+        writeMethod(ACC_PUBLIC, "<init>", "()V", constructor);
+    }
+
+    // int run(Machine machine, int address), calls the block at the address
+    // or returns -1 if there is none
+    private void writeDispatch() throws IOException {
+        int[] addresses = Arrays.copyOf(blocks, blockCount);
+        Arrays.sort(addresses);
+        int[] targets = new int[addresses.length];
+        for (int i = 0; i < addresses.length; i++) {
+            targets[i] = methodRef(className, blockName(addresses[i]), BLOCK_DESCRIPTOR, false);
+        }
+
+        Code dispatch = new Code();
+        dispatch.op(ILOAD_2);
+        int lookupswitch = dispatch.op(LOOKUPSWITCH);
+        while (dispatch.length() % 4 != 0) {
+            dispatch.u1(0);
+        }
+        int table = dispatch.length();
+        int end = table + 8 + 8 * addresses.length;
+        // The default returns -1 right after the table, each block after it
+        dispatch.u4(end - lookupswitch);
+        dispatch.u4(addresses.length);
+        for (int i = 0; i < addresses.length; i++) {
+            dispatch.u4(addresses[i]);
+            dispatch.u4(end + 2 + 5 * i - lookupswitch);
+        }
+        dispatch.op(ICONST_M1);
+        dispatch.op(IRETURN);
+        for (int target : targets) {
+            dispatch.op(ALOAD_1);
+            dispatch.op(INVOKESTATIC);
+            dispatch.u2(target);
+            dispatch.op(IRETURN);
+        }
+        writeMethod(ACC_PUBLIC, "run", "(L" + MACHINE + ";I)I", dispatch);
+    }
+
+    private void writeMethod(int access, String name, String descriptor, Code body) throws IOException {
+        methods.writeShort(access);
+        methods.writeShort(utf8(name));
+        methods.writeShort(utf8(descriptor));
+        methods.writeShort(1);
+        methods.writeShort(utf8("Code"));
+        methods.writeInt(12 + body.length());
+        methods.writeShort(MAX_STACK);
+        methods.writeShort(MAX_LOCALS);
+        methods.writeInt(body.length());
+        methods.write(body.bytes, 0, body.length());
+        methods.writeShort(0);
+        methods.writeShort(0);
+        methodCount++;
+    }
+
+    private static String blockName(int address) {
+        return String.format("block%03X", address);
+    }
+
+    private int utf8(String value) throws IOException {
+        Integer index = constants.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        pool.writeByte(1);
+        pool.writeUTF(value);
+        return add("U" + value);
+    }
+
+    private int integer(int value) throws IOException {
+        Integer index = constants.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        pool.writeByte(3);
+        pool.writeInt(value);
+        return add("I" + value);
+    }
+
+    private int classRef(String name) throws IOException {
+        Integer index = constants.get("C" + name);
+        if (index != null) {
+            return index;
+        }
+        int nameIndex = utf8(name);
+        pool.writeByte(7);
+        pool.writeShort(nameIndex);
+        return add("C" + name);
+    }
+
+    private int methodRef(String owner, String name, String descriptor, boolean isInterface)
+            throws IOException {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        Integer nameAndType = constants.get("N" + name + descriptor);
+        if (nameAndType == null) {
+            pool.writeByte(12);
+            pool.writeShort(nameIndex);
+            pool.writeShort(descriptorIndex);
+            nameAndType = add("N" + name + descriptor);
+        }
+        pool.writeByte(isInterface ? 11 : 10);
+        pool.writeShort(ownerIndex);
+        pool.writeShort(nameAndType);
+        return add(key);
+    }
+
+    private int add(String key) {
+        int index = poolCount++;
+        constants.put(key, index);
+        return index;
+    }
+
+    /**
+     * Bytecode of a single method.
+     */
+    private static final class Code {
+
+        private byte[] bytes = new byte[256];
+        private int length;
+
+        // Returns the offset of the opcode, which branches are relative to
+        int op(int opcode) {
+            int offset = length;
+            u1(opcode);
+            return offset;
+        }
+
+        void op(int opcode, int operand) {
+            u1(opcode);
+            u1(operand);
+        }
+
+        void u1(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * length);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+        void u4(int value) {
+            u2(value >> 16);
+            u2(value);
+        }
+
+        // Sets the 16 bit branch offset of the opcode at the given offset
+        void patch(int opcode, int offset) {
+            bytes[opcode + 1] = (byte) (offset >> 8);
+            bytes[opcode + 2] = (byte) offset;
+        }
+
+        int length() {
+            return length;
+        }
+    }
+
+}
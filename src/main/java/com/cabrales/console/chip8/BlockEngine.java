@@ -0,0 +1,248 @@
+package com.cabrales.console.chip8;
+
+/**
+ * Optional execution engine that caches decoded straight-line runs of
+ * instructions.
+ *
+ * The first time the program counter reaches an address the instructions from
+ * that address up to and including the next branch, skip, call, return, key
+ * wait or memory write are fetched and decoded into a block, operands and
+ * all. Later visits run the block directly without fetching or decoding from
+ * memory again. Register and flow instructions run in the block itself, which
+ * sets the program counter and counts its cycles towards the timers in one
+ * step when it ends or reaches an instruction that needs them.
+ *
+ * Blocks which overlap a range written by FX33 or FX55 are dropped and
+ * rebuilt from the new memory contents the next time they are reached.
+ * Results match running {@link Chip8#cycle()} the same number of times.
+ */
+public final class BlockEngine implements ExecutionEngine, WriteListener {
+
+    private static final int MEM_SIZE = 4096;
+    private static final int MAX_BLOCK_LENGTH = 64;
+
+    private final Chip8 chip8;
+    private final Block[] blocks = new Block[MEM_SIZE];
+
+    public BlockEngine(Chip8 chip8) {
+        this.chip8 = chip8;
+        chip8.setWriteListener(this);
+    }
+
+    @Override
+    public void run(int instructions) {
+        while (instructions > 0) {
+            int pc = chip8.getPc();
+            if (pc < 0 || pc + 1 >= MEM_SIZE) {
+                // Off the end of memory, fails the same way as the interpreter
+                chip8.cycle();
+                instructions--;
+                continue;
+            }
+            Block block = blocks[pc];
+            if (block == null) {
+                block = compile(pc);
+                blocks[pc] = block;
+            }
+            instructions -= block.execute(chip8, instructions);
+        }
+    }
+
+    /**
+     * Drops every cached block.
+     */
+    public void invalidate() {
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = null;
+        }
+    }
+
+    @Override
+    public void memoryReplaced() {
+        invalidate();
+    }
+
+    @Override
+    public void memoryWritten(int from, int to) {
+        int first = Math.max(0, from - 2 * MAX_BLOCK_LENGTH + 1);
+        int last = Math.min(MEM_SIZE - 1, to);
+        for (int address = first; address <= last; address++) {
+            Block block = blocks[address];
+            if (block != null && block.start <= to && block.end > from) {
+                blocks[address] = null;
+            }
+        }
+    }
+
+    private Block compile(int start) {
+        int[] instructions = new int[MAX_BLOCK_LENGTH];
+        int length = 0;
+        int address = start;
+        do {
+            int instruction = chip8.instructionAt(address);
+            instructions[length++] = instruction;
+            address += 2;
+            if (endsBlock(Opcodes.lookup(instruction))) {
+                break;
+            }
+        } while (length < MAX_BLOCK_LENGTH && address + 1 < MEM_SIZE);
+        return new Block(start, length, instructions);
+    }
+
+    static boolean endsBlock(int id) {
+        switch (id) {
+            case Opcodes.ILLEGAL:
+            case Opcodes.RET:
+            case Opcodes.JP:
+            case Opcodes.CALL:
+            case Opcodes.SE_VX_NN:
+            case Opcodes.SNE_VX_NN:
+            case Opcodes.SE_VX_VY:
+            case Opcodes.SNE_VX_VY:
+            case Opcodes.JP_V0:
+            case Opcodes.SKP:
+            case Opcodes.SKNP:
+            case Opcodes.LD_VX_K:
+            case Opcodes.LD_B_VX:
+            case Opcodes.LD_MEM_VX:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * A run of instructions decoded into their opcode ids and operands.
+     *
+     * Register and flow instructions are executed right here, with the
+     * program counter kept in a local and the cycles only counted. Before any
+     * other instruction, which may read the timers, the keys, memory or the
+     * program counter, the machine is brought up to date and the instruction
+     * is handed to {@link Chip8#execute(int, int)}.
+     */
+    private static final class Block {
+
+        private final int start;
+        private final int end;
+        private final int length;
+        private final int[] instructions;
+        // Opcode id in the low byte, then x, y and nn or nnn, whichever the
+        // instruction takes, from bit 16 up
+        private final int[] decoded;
+
+        private Block(int start, int length, int[] instructions) {
+            this.start = start;
+            this.end = start + 2 * length;
+            this.length = length;
+            this.instructions = instructions;
+            this.decoded = new int[length];
+            for (int i = 0; i < length; i++) {
+                int instruction = instructions[i];
+                int id = Opcodes.lookup(instruction);
+                int operand = id == Opcodes.JP || id == Opcodes.LD_I ? instruction & 0xFFF : instruction & 0xFF;
+                decoded[i] = id | (instruction & 0x0F00) | (instruction & 0x00F0) << 8 | operand << 16;
+            }
+        }
+
+        // Runs at most budget instructions and returns how many were run
+        private int execute(Chip8 chip8, int budget) {
+            int count = Math.min(budget, length);
+            int pc = start;
+            int cycles = 0;
+            for (int i = 0; i < count; i++) {
+                int op = decoded[i];
+                int x = (op >> 8) & 0xF;
+                int y = (op >> 12) & 0xF;
+                int operand = op >>> 16;
+                pc += 2;
+                cycles++;
+                switch (op & 0xFF) {
+                    case Opcodes.JP:
+                        pc = operand;
+                        break;
+                    case Opcodes.SE_VX_NN:
+                        if (chip8.getVX(x) == operand) {
+                            pc += 2;
+                        }
+                        break;
+                    case Opcodes.SNE_VX_NN:
+                        if (chip8.getVX(x) != operand) {
+                            pc += 2;
+                        }
+                        break;
+                    case Opcodes.SE_VX_VY:
+                        if (chip8.getVX(x) == chip8.getVX(y)) {
+                            pc += 2;
+                        }
+                        break;
+                    case Opcodes.SNE_VX_VY:
+                        if (chip8.getVX(x) != chip8.getVX(y)) {
+                            pc += 2;
+                        }
+                        break;
+                    case Opcodes.LD_VX_NN:
+                        chip8.setVX(operand, x);
+                        break;
+                    case Opcodes.ADD_VX_NN:
+                        chip8.setVX(chip8.getVX(x) + operand, x);
+                        break;
+                    case Opcodes.LD_VX_VY:
+                        chip8.setVX(chip8.getVX(y), x);
+                        break;
+                    case Opcodes.OR:
+                        chip8.setVX(chip8.getVX(x) | chip8.getVX(y), x);
+                        break;
+                    case Opcodes.AND:
+                        chip8.setVX(chip8.getVX(x) & chip8.getVX(y), x);
+                        break;
+                    case Opcodes.XOR:
+                        chip8.setVX(chip8.getVX(x) ^ chip8.getVX(y), x);
+                        break;
+                    case Opcodes.ADD_VX_VY:
+                        int sum = chip8.getVX(x) + chip8.getVX(y);
+                        chip8.setVX(sum > 255 ? 1 : 0, 0xF);
+                        chip8.setVX(sum, x);
+                        break;
+                    case Opcodes.SUB:
+                        int vx = chip8.getVX(x);
+                        int vy = chip8.getVX(y);
+                        chip8.setVX(vx > vy ? 1 : 0, 0xF);
+                        chip8.setVX(vx - vy, x);
+                        break;
+                    case Opcodes.SHR:
+                        chip8.setVX(chip8.getVX(x) & 0x1, 0xF);
+                        chip8.setVX(chip8.getVX(x) >> 1, x);
+                        break;
+                    case Opcodes.SUBN:
+                        chip8.setVX(chip8.getVX(y) - chip8.getVX(x), x);
+                        chip8.setVX(chip8.getVX(y) > chip8.getVX(x) ? 1 : 0, 0xF);
+                        break;
+                    case Opcodes.SHL:
+                        chip8.setVX((chip8.getVX(x) >> 7) & 0x01, 0xF);
+                        chip8.setVX(chip8.getVX(x) << 1, x);
+                        break;
+                    case Opcodes.LD_I:
+                        chip8.setiRegister(operand);
+                        break;
+                    case Opcodes.ADD_I_VX:
+                        chip8.setiRegister(chip8.getiRegister() + chip8.getVX(x));
+                        break;
+                    case Opcodes.LD_F_VX:
+                        chip8.setiRegister(chip8.getVX(x) * 5);
+                        break;
+                    default:
+                        chip8.setPc(pc);
+                        chip8.updateTimers(cycles);
+                        cycles = 0;
+                        chip8.execute(op & 0xFF, instructions[i]);
+                        pc = chip8.getPc();
+                        break;
+                }
+            }
+            chip8.setPc(pc);
+            chip8.updateTimers(cycles);
+            return count;
+        }
+    }
+
+}
@@ -1,33 +1,60 @@
 package com.cabrales.console.chip8;
 
-import com.cabrales.console.chip8.util.Audio;
-import com.cabrales.console.chip8.util.Input;
+import com.cabrales.console.chip8.util.AtomicKeypad;
+import com.cabrales.console.chip8.util.AudioSink;
+import com.cabrales.console.chip8.util.Keypad;
+import com.cabrales.console.chip8.util.RandomSource;
+import com.cabrales.console.chip8.util.SplitMixRandom;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Random;
 
 /**
  * Created by Casey on 9/5/16.
  *
  * In reference to TDD tutorial from https://github.com/secondsun/chip8
  */
-public class Chip8 {
+public class Chip8 implements ExecutionEngine {
 
     private static final int DISPLAY_HEIGHT = 32;
     private static final int DISPLAY_WIDTH = 64;
     private static final int MEM_SIZE = 4096;
-    private final Random random = new Random();
+    // "C8ST"
+    private static final int SNAPSHOT_MAGIC = 0x43385354;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 8;
+    // Everything but memory, see saveState
+    private static final int SNAPSHOT_STATE_SIZE = 2 + 2 + 1 + 2 * 16 + 16 + 1 + 1 + 8 * DISPLAY_HEIGHT
+            + 4 + 4 + 8 + 8;
+    private RandomSource random = new SplitMixRandom();
 
     private int pc = 0x200;
     private final byte[] memory;
     private final int[] stack = new int[16];
     private int iRegister = 0;
-    private byte[] display = new byte[DISPLAY_HEIGHT * DISPLAY_WIDTH];
+    // One word per row, the leftmost pixel is the most significant bit
+    private final long[] display = new long[DISPLAY_HEIGHT];
+    // Unpacked copies of the display handed out by getDisplayView
+    private final byte[][] frames = new byte[2][DISPLAY_HEIGHT * DISPLAY_WIDTH];
+    private final ByteBuffer[] frameViews = new ByteBuffer[]{
+        ByteBuffer.wrap(frames[0]).asReadOnlyBuffer(),
+        ByteBuffer.wrap(frames[1]).asReadOnlyBuffer()
+    };
+    private int frontFrame = 0;
+    private boolean displayChanged = false;
+    // One bit per display row changed since the last call to takeDirtyRows
+    private int dirtyRows = 0;
     private int sp = 0;
     private final int[] vRegisters = new int[0x10];
     private int delayTimer = 0;
     private int soundTimer = 0;
     private long step = 0;
+    private int cyclesPerTick = 0;
+    private int tickCountdown = 0;
+    private long cycleCount = 0;
+    private WriteListener writeListener;
+    private AudioSink audioSink = AudioSink.NULL;
+    private Keypad keypad = new AtomicKeypad();
 
 
     public Chip8() {
@@ -81,14 +108,129 @@ public class Chip8 {
         return iRegister;
     }
 
+    /**
+     * Returns a copy of the display with one byte per pixel, row by row. A
+     * pixel which is on is 1, otherwise 0.
+     *
+     * @return the 64 * 32 display pixels
+     */
     public byte[] getDisplay() {
-        return Arrays.copyOf(display, display.length);
+        byte[] pixels = new byte[DISPLAY_HEIGHT * DISPLAY_WIDTH];
+        unpackDisplay(pixels);
+        return pixels;
+    }
+
+    /**
+     * Returns a read-only view of the display with the same layout as
+     * {@link #getDisplay()}, without copying it.
+     *
+     * The view is only rebuilt after a draw or clear actually changed pixels.
+     * It is unpacked into the other of two buffers, so a view returned earlier
+     * keeps showing the previous frame until the next change after that. The
+     * same buffer instance is returned between changes, read it with absolute
+     * gets.
+     *
+     * @return the display pixels, one byte per pixel
+     */
+    public ByteBuffer getDisplayView() {
+        if (displayChanged) {
+            int back = 1 - frontFrame;
+            unpackDisplay(frames[back]);
+            frontFrame = back;
+            displayChanged = false;
+        }
+        ByteBuffer view = frameViews[frontFrame];
+        view.clear();
+        return view;
+    }
+
+    /**
+     * Returns the rows of the display which changed since the last call and
+     * starts tracking again from here. Bit n is set when row n changed.
+     *
+     * @return a bitmask of the changed rows, 0 if nothing changed
+     */
+    public int takeDirtyRows() {
+        int rows = dirtyRows;
+        dirtyRows = 0;
+        return rows;
+    }
+
+    private void unpackDisplay(byte[] pixels) {
+        for (int y = 0; y < DISPLAY_HEIGHT; y++) {
+            long row = display[y];
+            for (int x = 0; x < DISPLAY_WIDTH; x++) {
+                pixels[y * DISPLAY_WIDTH + x] = (byte) ((row >>> (DISPLAY_WIDTH - 1 - x)) & 1);
+            }
+        }
+    }
+
+    /**
+     * Returns a row of the display packed into a long. The leftmost pixel is
+     * the most significant bit.
+     *
+     * @param y the row
+     * @return the pixels of the row
+     */
+    public long getDisplayRow(int y) {
+        return display[y];
     }
 
     public int getSp() {
         return sp;
     }
 
+    public int getDelayTimer() {
+        return delayTimer;
+    }
+
+    public int getSoundTimer() {
+        return soundTimer;
+    }
+
+    /**
+     * Sets where the sound timer is played. Defaults to {@link AudioSink#NULL},
+     * for sound through the speaker set a
+     * {@link com.cabrales.console.chip8.util.JavaSoundSink} of this machine's
+     * own.
+     *
+     * @param audioSink the sink receiving every timer tick
+     */
+    public void setAudioSink(AudioSink audioSink) {
+        this.audioSink = audioSink;
+    }
+
+    /**
+     * Sets where CXNN takes its random numbers from. Defaults to a
+     * {@link SplitMixRandom} with an unpredictable seed.
+     *
+     * @param random the random source of this machine
+     */
+    public void setRandomSource(RandomSource random) {
+        this.random = random;
+    }
+
+    /**
+     * Seeds the random numbers of this machine, so that runs with the same
+     * seed and input are the same.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.random = new SplitMixRandom(seed);
+    }
+
+    /**
+     * Sets where input is read from. Defaults to a keypad of this machine
+     * alone with no keys pressed. The keyboard is read through
+     * {@link com.cabrales.console.chip8.util.Input#getKeypad()}.
+     *
+     * @param keypad the keypad of this machine
+     */
+    public void setKeypad(Keypad keypad) {
+        this.keypad = keypad;
+    }
+
     public int getVX(int regNum) {
         return vRegisters[regNum] & 0x000000FF;
     }
@@ -163,313 +305,632 @@ public class Chip8 {
 
     // Where the instruction given is executed according to the Chip8 specs
     public void execute(int instruction) {
-        int opCode = instruction & 0xF000;
-        int x = (instruction & 0x0F00) >> 8;
-        int y = (instruction & 0x00F0) >> 4;
-        int nn = instruction & 0xFF;
-        int nnn = instruction & 0xFFF;
-
-        switch(opCode) {
-            case 0x0000:
-                switch (instruction) {
-                    //CLS - Clear screen
-                    case 0x00E0:
-                        display = new byte[memory.length];
-                        break;
-
-                    //RET - Returns from subroutine
-                    case 0x00EE:
-                        pc = stack[--sp];
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("Unsupported opcode:" + Integer.toHexString(instruction));
-                }
-                break;
-
-            // JP - addr
-            case 0x1000:
-                pc = nnn;
-                break;
-
-            // CALL - addr
-            case 0x2000:
-                stack[sp++] = pc;
-                pc = nnn;
-                break;
-
-            // SE
-            case 0x3000:
-                if (getVX(x) == nn) {
-                    pc += 2;
-                }
-                break;
-
-            // SNE
-            case 0x4000:
-                if (getVX(x) != nn) {
-                    pc += 2;
-                }
-                break;
-
-            // SE
-            case 0x5000:
-                if (getVX(x) == getVX(y)) {
-                    pc += 2;
-                }
-                break;
-
-            // LD
-            case 0x6000:
-                setVX(nn, x);
-                break;
-
-            // ADD
-            case 0x7000:
-                setVX(getVX(x) + nn, x);
-                break;
-
-            case 0x8000:
-                int low = instruction & 0xF;
-                switch (low) {
-                    // LD
-                    case 0x0:
-                        setVX(getVX(y), x);
-                        break;
-
-                    // OR
-                    case 0x1:
-                        setVX(getVX(x) | getVX(y), x);
-                        break;
-
-                    // AND
-                    case 0x2:
-                        setVX(getVX(x) & getVX(y), x);
-                        break;
-
-                    // XOR
-                    case 0x3:
-                        setVX(getVX(x) ^ getVX(y), x);
-                        break;
-
-                    // ADD
-                    case 0x4:
-                        int sum = getVX(x) + getVX(y);
-                        setVX(sum > 255 ? 1 : 0, 0xF);
-                        setVX(sum, x);
-
-                        if (getVX(x) > 255) {
-                            setVX(getVX(x) - 255, x);
-                        }
-                        break;
-
-                    // SUB
-                    case 0x5:
-                        int sub = getVX(x) - getVX(y);
-                        setVX(getVX(x) > getVX(y) ? 1 : 0, 0xF);
-                        setVX(sub, x);
-
-                        if (getVX(x) < 0) {
-                            setVX(getVX(x) + 256, x);
-                        }
-                        break;
-
-                    // SHR
-                    case 0x6:
-                        setVX(getVX(x) & 0x1, 0xF);
-                        setVX(getVX(x) >> 1, x);
-                        break;
-
-                    // SUBN
-                    case 0x7:
-                        setVX(getVX(y) - getVX(x), x);
-                        if (getVX(y) > getVX(x)) {
-                            setVX(getVX(x) + 256, x);
-                            setVX(1, 0xF);
-                        } else {
-                            setVX(0, 0xF);
-                        }
-                        break;
-
-                    // SHL
-                    case 0xE:
-                        setVX((getVX(x) >> 7) & 0x01, 0xF);
-                        setVX(getVX(x) << 1, x);
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("Unsupported opcode:" + Integer.toHexString(instruction));
-                }
-                break;
-
-            // SNE
-            case 0x9000:
-                if (getVX(x) != getVX(y)) {
-                    pc += 2;
-                }
-                break;
-
-            // LD
-            case 0xA000:
-                iRegister = nnn;
-                break;
-
-            // JP
-            case 0xB000:
-                pc = getV0() + nnn;
-                break;
-
-            // RND
-            case 0xC000:
-                setVX(random.nextInt(0xFF) & nn, x);
-                break;
-
-            // DRW
-            case 0xD000:
-                int xCoord = getVX(x);
-                int yCoord = getVX(y);
-                int height = instruction & 0x00F;
-
-                setVX(0, 0xF);
-
-                for (int i = 0; i < height; i++) {
-                    byte pixelRow = getPixelRow(xCoord, yCoord + i);
-                    writeNewDisplay(xCoord, yCoord + i, memory[iRegister + i]);
-                    if ((memory[iRegister + i] & pixelRow) != 0) {
-                        setVX(1, 0xF);
-                    }
-                }
-                break;
-
-            case 0xE000:
-                switch(nn) {
-                    // SKP
-                    case 0x9E:
-                        if (Input.read() == getVX(x)) {
-                            pc += 2;
-                        }
-                        break;
-
-                    // SKNP
-                    case 0xA1:
-                        if (Input.read() != getVX(x)) {
-                            pc += 2;
-                        }
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("Unsupported opcode:" + Integer.toHexString(instruction));
-                }
-                break;
-            case 0xF000:
-                switch(nn) {
-                    // LD
-                    case 0x07:
-                        setVX(delayTimer, x);
-                        break;
-
-                    // LD
-                    case 0x0A:
-                        if (Input.read() == -1) {
-                            pc -= 2;
-                        } else {
-                            setVX(Input.read(), x);
-                        }
-                        break;
-
-                    // LD DT
-                    case 0x15:
-                        delayTimer = getVX(x);
-                        break;
-
-                    // LD ST
-                    case 0x18:
-                        soundTimer = getVX(x);
-                        break;
-
-                    // ADD I
-                    case 0x1E:
-                        iRegister += getVX(x);
-                        break;
-
-                    // LD F
-                    case 0x29:
-                        iRegister = getVX(x) * 5;
-                        break;
-
-                    // LD B
-                    case 0x33:
-                        int val = getVX(x);
-                        for (int i = iRegister + 2; i >= iRegister - 2; i--) {
-                            memory[i] = (byte) (val % 10);
-                            val /= 10;
-                        }
-                        break;
-
-                    // LD [I]
-                    case 0x55:
-                        for (int i = 0; i <= x; i++) {
-                            memory[iRegister++] = (byte) getVX(i);
-                        }
-                        break;
-
-                    // LD Vx
-                    case 0x65:
-                        for (int i = 0; i <= x; i++) {
-                            setVX(memory[iRegister++], i);
-                        }
-                        break;
-                    default:
-                        throw new UnsupportedOperationException("Unsupported opcode:" + Integer.toHexString(instruction));
-                }
-                break;
+        execute(Opcodes.lookup(instruction), instruction);
+    }
+
+    // Executes an instruction that has already been decoded by Opcodes. Each
+    // opcode has its own handler and only the register and flow instructions
+    // are dispatched here, so that this stays small enough for the JIT to
+    // inline into its callers
+    void execute(int opcodeId, int instruction) {
+        switch (opcodeId) {
+            case Opcodes.RET:
+                ret();
+                return;
+            case Opcodes.JP:
+                jp(instruction);
+                return;
+            case Opcodes.CALL:
+                call(instruction);
+                return;
+            case Opcodes.SE_VX_NN:
+                seVxNn(instruction);
+                return;
+            case Opcodes.SNE_VX_NN:
+                sneVxNn(instruction);
+                return;
+            case Opcodes.SE_VX_VY:
+                seVxVy(instruction);
+                return;
+            case Opcodes.LD_VX_NN:
+                ldVxNn(instruction);
+                return;
+            case Opcodes.ADD_VX_NN:
+                addVxNn(instruction);
+                return;
+            case Opcodes.LD_VX_VY:
+                ldVxVy(instruction);
+                return;
+            case Opcodes.OR:
+                or(instruction);
+                return;
+            case Opcodes.AND:
+                and(instruction);
+                return;
+            case Opcodes.XOR:
+                xor(instruction);
+                return;
+            case Opcodes.ADD_VX_VY:
+                addVxVy(instruction);
+                return;
+            case Opcodes.SUB:
+                sub(instruction);
+                return;
+            case Opcodes.SHR:
+                shr(instruction);
+                return;
+            case Opcodes.SUBN:
+                subn(instruction);
+                return;
+            case Opcodes.SHL:
+                shl(instruction);
+                return;
+            case Opcodes.SNE_VX_VY:
+                sneVxVy(instruction);
+                return;
+            case Opcodes.LD_I:
+                ldI(instruction);
+                return;
+            default:
+                executeOther(opcodeId, instruction);
+        }
+    }
+
+    // Display, timer, keypad and memory instructions
+    private void executeOther(int opcodeId, int instruction) {
+        switch (opcodeId) {
+            case Opcodes.CLS:
+                cls();
+                return;
+            case Opcodes.JP_V0:
+                jpV0(instruction);
+                return;
+            case Opcodes.RND:
+                rnd(instruction);
+                return;
+            case Opcodes.DRW:
+                drw(instruction);
+                return;
+            case Opcodes.SKP:
+                skp(instruction);
+                return;
+            case Opcodes.SKNP:
+                sknp(instruction);
+                return;
+            case Opcodes.LD_VX_DT:
+                ldVxDt(instruction);
+                return;
+            case Opcodes.LD_VX_K:
+                ldVxK(instruction);
+                return;
+            case Opcodes.LD_DT_VX:
+                ldDtVx(instruction);
+                return;
+            case Opcodes.LD_ST_VX:
+                ldStVx(instruction);
+                return;
+            case Opcodes.ADD_I_VX:
+                addIVx(instruction);
+                return;
+            case Opcodes.LD_F_VX:
+                ldFVx(instruction);
+                return;
+            case Opcodes.LD_B_VX:
+                ldBVx(instruction);
+                return;
+            case Opcodes.LD_MEM_VX:
+                ldMemVx(instruction);
+                return;
+            case Opcodes.LD_VX_MEM:
+                ldVxMem(instruction);
+                return;
             default:
                 throw new UnsupportedOperationException("Unsupported opcode:" + Integer.toHexString(instruction));
         }
     }
 
-    public void cycle() {
-        int currInstruction = ((memory[pc++] << 8) & 0xFF00 | (memory[pc++] & 0xFF));
+    //CLS - Clear screen
+    private void cls() {
+        for (int row = 0; row < DISPLAY_HEIGHT; row++) {
+            if (display[row] != 0) {
+                display[row] = 0;
+                displayChanged = true;
+                dirtyRows |= 1 << row;
+            }
+        }
+    }
+
+    //RET - Returns from subroutine
+    private void ret() {
+        pc = stack[--sp];
+    }
+
+    // JP - addr
+    private void jp(int instruction) {
+        pc = instruction & 0xFFF;
+    }
+
+    // CALL - addr
+    private void call(int instruction) {
+        stack[sp++] = pc;
+        pc = instruction & 0xFFF;
+    }
+
+    // SE
+    private void seVxNn(int instruction) {
+        if (getVX((instruction & 0x0F00) >> 8) == (instruction & 0xFF)) {
+            pc += 2;
+        }
+    }
+
+    // SNE
+    private void sneVxNn(int instruction) {
+        if (getVX((instruction & 0x0F00) >> 8) != (instruction & 0xFF)) {
+            pc += 2;
+        }
+    }
+
+    // SE
+    private void seVxVy(int instruction) {
+        if (getVX((instruction & 0x0F00) >> 8) == getVX((instruction & 0x00F0) >> 4)) {
+            pc += 2;
+        }
+    }
+
+    // LD
+    private void ldVxNn(int instruction) {
+        setVX(instruction & 0xFF, (instruction & 0x0F00) >> 8);
+    }
+
+    // ADD
+    private void addVxNn(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        setVX(getVX(x) + (instruction & 0xFF), x);
+    }
+
+    // LD
+    private void ldVxVy(int instruction) {
+        setVX(getVX((instruction & 0x00F0) >> 4), (instruction & 0x0F00) >> 8);
+    }
+
+    // OR
+    private void or(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        setVX(getVX(x) | getVX((instruction & 0x00F0) >> 4), x);
+    }
+
+    // AND
+    private void and(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        setVX(getVX(x) & getVX((instruction & 0x00F0) >> 4), x);
+    }
+
+    // XOR
+    private void xor(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        setVX(getVX(x) ^ getVX((instruction & 0x00F0) >> 4), x);
+    }
+
+    // ADD
+    private void addVxVy(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        int sum = getVX(x) + getVX((instruction & 0x00F0) >> 4);
+        setVX(sum > 255 ? 1 : 0, 0xF);
+        setVX(sum, x);
+
+        if (getVX(x) > 255) {
+            setVX(getVX(x) - 255, x);
+        }
+    }
+
+    // SUB
+    private void sub(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        int y = (instruction & 0x00F0) >> 4;
+        int sub = getVX(x) - getVX(y);
+        setVX(getVX(x) > getVX(y) ? 1 : 0, 0xF);
+        setVX(sub, x);
+
+        if (getVX(x) < 0) {
+            setVX(getVX(x) + 256, x);
+        }
+    }
+
+    // SHR
+    private void shr(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        setVX(getVX(x) & 0x1, 0xF);
+        setVX(getVX(x) >> 1, x);
+    }
+
+    // SUBN
+    private void subn(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        int y = (instruction & 0x00F0) >> 4;
+        setVX(getVX(y) - getVX(x), x);
+        if (getVX(y) > getVX(x)) {
+            setVX(getVX(x) + 256, x);
+            setVX(1, 0xF);
+        } else {
+            setVX(0, 0xF);
+        }
+    }
+
+    // SHL
+    private void shl(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        setVX((getVX(x) >> 7) & 0x01, 0xF);
+        setVX(getVX(x) << 1, x);
+    }
+
+    // SNE
+    private void sneVxVy(int instruction) {
+        if (getVX((instruction & 0x0F00) >> 8) != getVX((instruction & 0x00F0) >> 4)) {
+            pc += 2;
+        }
+    }
 
-        long currTime = System.currentTimeMillis();
-        if (currTime > step) {
-            if (delayTimer > 0) {
-                delayTimer--;
+    // LD
+    private void ldI(int instruction) {
+        iRegister = instruction & 0xFFF;
+    }
+
+    // JP
+    private void jpV0(int instruction) {
+        pc = getV0() + (instruction & 0xFFF);
+    }
+
+    // RND
+    private void rnd(int instruction) {
+        setVX(random.nextByte() & instruction & 0xFF, (instruction & 0x0F00) >> 8);
+    }
+
+    // DRW
+    private void drw(int instruction) {
+        int xCoord = getVX((instruction & 0x0F00) >> 8);
+        int yCoord = getVX((instruction & 0x00F0) >> 4);
+        int height = instruction & 0x00F;
+
+        setVX(0, 0xF);
+
+        for (int i = 0; i < height; i++) {
+            int row = (yCoord + i) % DISPLAY_HEIGHT;
+            // Move the sprite byte to the top of the word and rotate it
+            // into place, which also wraps it around the right edge
+            long sprite = Long.rotateRight((memory[iRegister + i] & 0xFFL) << 56, xCoord);
+            if ((display[row] & sprite) != 0) {
+                setVX(1, 0xF);
             }
-            if (soundTimer > 0) {
-                soundTimer--;
-                Audio.play();
-            } else {
-                Audio.stop();
+            if (sprite != 0) {
+                display[row] ^= sprite;
+                displayChanged = true;
+                dirtyRows |= 1 << row;
             }
+        }
+    }
+
+    // SKP
+    private void skp(int instruction) {
+        if (isPressed(getVX((instruction & 0x0F00) >> 8))) {
+            pc += 2;
+        }
+    }
+
+    // SKNP
+    private void sknp(int instruction) {
+        if (!isPressed(getVX((instruction & 0x0F00) >> 8))) {
+            pc += 2;
+        }
+    }
+
+    // LD
+    private void ldVxDt(int instruction) {
+        setVX(delayTimer, (instruction & 0x0F00) >> 8);
+    }
+
+    // LD
+    private void ldVxK(int instruction) {
+        int keys = keypad.getKeys();
+        if (keys == 0) {
+            pc -= 2;
+        } else {
+            setVX(Integer.numberOfTrailingZeros(keys), (instruction & 0x0F00) >> 8);
+        }
+    }
+
+    // LD DT
+    private void ldDtVx(int instruction) {
+        delayTimer = getVX((instruction & 0x0F00) >> 8);
+    }
+
+    // LD ST
+    private void ldStVx(int instruction) {
+        soundTimer = getVX((instruction & 0x0F00) >> 8);
+    }
 
-            step = currTime + (1000 / 60);
+    // ADD I
+    private void addIVx(int instruction) {
+        iRegister += getVX((instruction & 0x0F00) >> 8);
+    }
+
+    // LD F
+    private void ldFVx(int instruction) {
+        iRegister = getVX((instruction & 0x0F00) >> 8) * 5;
+    }
+
+    // LD B
+    private void ldBVx(int instruction) {
+        int val = getVX((instruction & 0x0F00) >> 8);
+        for (int i = iRegister + 2; i >= iRegister - 2; i--) {
+            memory[i] = (byte) (val % 10);
+            val /= 10;
+        }
+        memoryWritten(iRegister - 2, iRegister + 2);
+    }
+
+    // LD [I]
+    private void ldMemVx(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        int start = iRegister;
+        for (int i = 0; i <= x; i++) {
+            memory[iRegister++] = (byte) getVX(i);
         }
+        memoryWritten(start, iRegister - 1);
+    }
 
+    // LD Vx
+    private void ldVxMem(int instruction) {
+        int x = (instruction & 0x0F00) >> 8;
+        for (int i = 0; i <= x; i++) {
+            setVX(memory[iRegister++], i);
+        }
+    }
+
+    @Override
+    public void run(int instructions) {
+        for (int i = 0; i < instructions; i++) {
+            cycle();
+        }
+    }
+
+    @Override
+    public void cycle() {
+        int currInstruction = ((memory[pc++] << 8) & 0xFF00 | (memory[pc++] & 0xFF));
+        updateTimers();
         execute(currInstruction);
     }
 
-    private byte getPixelRow(int x, int y) {
-        x %= 64;
-        y %= 32;
-        byte res = display[x + y * 64];
+    /**
+     * Sets how the delay and sound timers are counted down.
+     *
+     * By default (0) the timers count down at 60 hertz of wall clock time,
+     * checked on every cycle. With a positive value they count down once every
+     * that many cycles instead, which makes runs reproducible and lets the
+     * caller pace the machine against the clock however it likes, for
+     * instance 10 cycles per tick run 60 times a second is a 600 hertz CPU.
+     *
+     * @param cyclesPerTick cycles per 60 hertz timer tick, or 0 for wall clock
+     * time
+     */
+    public void setCyclesPerTick(int cyclesPerTick) {
+        if (cyclesPerTick < 0) {
+            throw new IllegalArgumentException("Cycles per tick must not be negative");
+        }
+        this.cyclesPerTick = cyclesPerTick;
+        this.tickCountdown = cyclesPerTick;
+    }
 
-        for (int i = 1; i < 8; i++) {
-            res |= (display[(x + i) % 64 + y * 64] << (8 - i));
+    public int getCyclesPerTick() {
+        return cyclesPerTick;
+    }
+
+    /**
+     * @return the number of instructions executed by cycle so far
+     */
+    public long getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * @return the number of bytes written by {@link #saveState(ByteBuffer)}
+     */
+    public int getSnapshotSize() {
+        return SNAPSHOT_HEADER_SIZE + SNAPSHOT_STATE_SIZE + memory.length;
+    }
+
+    /**
+     * Writes the whole machine state at the position of the buffer: registers,
+     * stack, timers, cycle counting, the random number generator, the display
+     * and memory. Input, sound and the wall clock timer are not part of it.
+     *
+     * The format starts with a magic number and a version. All values are
+     * written in the byte order of the buffer, a snapshot has to be restored
+     * with the same order.
+     *
+     * @param out buffer with at least {@link #getSnapshotSize()} bytes
+     * remaining
+     */
+    public void saveState(ByteBuffer out) {
+        out.putInt(SNAPSHOT_MAGIC);
+        out.putShort((short) SNAPSHOT_VERSION);
+        out.putShort((short) memory.length);
+        out.putShort((short) pc);
+        out.putShort((short) iRegister);
+        out.put((byte) sp);
+        for (int address : stack) {
+            out.putShort((short) address);
         }
+        for (int v : vRegisters) {
+            out.put((byte) v);
+        }
+        out.put((byte) delayTimer);
+        out.put((byte) soundTimer);
+        for (long row : display) {
+            out.putLong(row);
+        }
+        out.putInt(cyclesPerTick);
+        out.putInt(tickCountdown);
+        out.putLong(cycleCount);
+        out.putLong(random.getState());
+        out.put(memory);
+    }
 
-        return res;
+    /**
+     * @return the machine state in the format of
+     * {@link #saveState(ByteBuffer)}
+     */
+    public byte[] saveState() {
+        byte[] snapshot = new byte[getSnapshotSize()];
+        saveState(ByteBuffer.wrap(snapshot));
+        return snapshot;
     }
 
-    private void writeNewDisplay(int x, int y, byte loc) {
-        x %= 64;
-        y %= 32;
+    /**
+     * Replaces the machine state with one read from the position of the
+     * buffer. The whole display is marked as changed and any engine running
+     * this machine drops its translated code.
+     *
+     * @param in a snapshot written by {@link #saveState(ByteBuffer)}
+     * @throws IllegalArgumentException if the buffer does not hold a
+     * snapshot of a machine with the same memory size, nothing is changed then
+     */
+    public void restoreState(ByteBuffer in) {
+        int start = in.position();
+        if (in.remaining() < SNAPSHOT_HEADER_SIZE || in.getInt(start) != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not a Chip8 snapshot");
+        }
+        int version = in.getShort(start + 4);
+        if (version != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        int memorySize = in.getShort(start + 6) & 0xFFFF;
+        if (memorySize != memory.length) {
+            throw new IllegalArgumentException("Snapshot memory size " + memorySize + " does not match "
+                    + memory.length);
+        }
+        if (in.remaining() < getSnapshotSize()) {
+            throw new IllegalArgumentException("Snapshot is truncated");
+        }
+
+        in.position(start + SNAPSHOT_HEADER_SIZE);
+        pc = in.getShort() & 0xFFFF;
+        iRegister = in.getShort() & 0xFFFF;
+        sp = in.get() & 0xFF;
+        for (int i = 0; i < stack.length; i++) {
+            stack[i] = in.getShort() & 0xFFFF;
+        }
+        for (int i = 0; i < vRegisters.length; i++) {
+            vRegisters[i] = in.get() & 0xFF;
+        }
+        delayTimer = in.get() & 0xFF;
+        soundTimer = in.get() & 0xFF;
+        for (int i = 0; i < display.length; i++) {
+            display[i] = in.getLong();
+        }
+        cyclesPerTick = in.getInt();
+        tickCountdown = in.getInt();
+        cycleCount = in.getLong();
+        random.setState(in.getLong());
+        in.get(memory);
+
+        displayChanged = true;
+        dirtyRows = -1;
+        if (writeListener != null) {
+            writeListener.memoryReplaced();
+        }
+    }
+
+    /**
+     * @param snapshot a snapshot returned by {@link #saveState()}
+     */
+    public void restoreState(byte[] snapshot) {
+        restoreState(ByteBuffer.wrap(snapshot));
+    }
+
+    // Counts the cycle and steps the timers when a tick is due
+    void updateTimers() {
+        cycleCount++;
+        if (cyclesPerTick > 0) {
+            if (--tickCountdown <= 0) {
+                tickCountdown = cyclesPerTick;
+                tickTimers();
+            }
+        } else {
+            long currTime = System.currentTimeMillis();
+            if (currTime > step) {
+                tickTimers();
+                step = currTime + (1000 / 60);
+            }
+        }
+    }
+
+    // Same as calling updateTimers once per cycle, for code which runs a
+    // number of instructions that neither read nor write the timers
+    void updateTimers(int cycles) {
+        if (cycles <= 0) {
+            return;
+        }
+        if (cyclesPerTick > 0) {
+            cycleCount += cycles;
+            int due = Math.max(tickCountdown, 1);
+            while (cycles >= due) {
+                cycles -= due;
+                tickTimers();
+                due = cyclesPerTick;
+            }
+            tickCountdown = due - cycles;
+        } else {
+            cycleCount += cycles - 1;
+            updateTimers();
+        }
+    }
+
+    /**
+     * Counts the delay and sound timers down by one 60 hertz tick.
+     */
+    public void tickTimers() {
+        if (delayTimer > 0) {
+            delayTimer--;
+        }
+        if (soundTimer > 0) {
+            soundTimer--;
+            audioSink.play();
+        } else {
+            audioSink.stop();
+        }
+    }
+
+    void setPc(int pc) {
+        this.pc = pc;
+    }
+
+    void setiRegister(int iRegister) {
+        this.iRegister = iRegister;
+    }
+
+    // Reads the two byte instruction stored at the given address
+    int instructionAt(int address) {
+        return ((memory[address] << 8) & 0xFF00 | (memory[address + 1] & 0xFF));
+    }
+
+    // Reads a return address from the call stack
+    int stackAt(int index) {
+        return stack[index];
+    }
+
+    void setWriteListener(WriteListener writeListener) {
+        this.writeListener = writeListener;
+    }
+
+    private void memoryWritten(int from, int to) {
+        if (writeListener != null) {
+            writeListener.memoryWritten(from, to);
+        }
+    }
 
-        display[x + y * 64] ^= (byte) ((loc & 0b10000000) >> 7);
-        display[(1 + (x)) % 64 + (y) * 64] ^= (byte) ((loc & 0b01000000) >> 6);
-        display[(2 + (x)) % 64 + (y) * 64] ^= (byte) ((loc & 0b00100000) >> 5);
-        display[(3 + (x)) % 64  + (y) * 64] ^= (byte) ((loc & 0b00010000) >> 4);
-        display[(4 + (x)) % 64  + (y) * 64] ^= (byte) ((loc & 0b00001000) >> 3);
-        display[(5 + (x)) % 64  + (y) * 64] ^= (byte) ((loc & 0b00000100) >> 2);
-        display[(6 + (x)) % 64  + (y) * 64] ^= (byte) ((loc & 0b00000010) >> 1);
-        display[(7 + (x)) % 64 + (y) * 64] ^= (byte) ((loc & 0b00000001));
+    // Keys only go up to 0xF, a larger value is never pressed
+    private boolean isPressed(int key) {
+        return key < 0x10 && (keypad.getKeys() & (1 << key)) != 0;
     }
 
 }
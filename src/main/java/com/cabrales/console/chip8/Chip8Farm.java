@@ -0,0 +1,221 @@
+package com.cabrales.console.chip8;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import com.cabrales.console.chip8.util.EmulatorMetrics;
+import com.cabrales.console.chip8.util.InputScript;
+import com.cabrales.console.chip8.util.RomCache;
+
+/**
+ * Runs many ROMs headless at once, for regression suites and fuzzing.
+ *
+ * Every job gets its own Chip8, engine and scripted keypad, with the timers
+ * counted in cycles and no sound, so jobs share nothing and can run on any
+ * thread. Jobs are spread over a work stealing ForkJoinPool, which keeps every
+ * core busy when job lengths differ. ROMs are read once and kept in a
+ * {@link RomCache}, so running them again only costs a copy of their memory.
+ *
+ * All jobs count their cycles and frames into the metrics of the farm, which
+ * can be published over JMX with {@link EmulatorMetrics#register(String)} to
+ * watch a long batch.
+ */
+public final class Chip8Farm implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    private final Function<Chip8, ExecutionEngine> engine;
+    private final EmulatorMetrics metrics = new EmulatorMetrics();
+    private final RomCache roms = new RomCache();
+
+    /**
+     * @param parallelism number of jobs run at the same time
+     * @param engine creates the engine to run a job on for its Chip8, such
+     * as {@code BlockEngine::new}, or {@code chip8 -> chip8} to interpret
+     */
+    public Chip8Farm(int parallelism, Function<Chip8, ExecutionEngine> engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("No engine given");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.engine = engine;
+    }
+
+    /**
+     * Runs all jobs and waits for them to finish. A job which fails, including
+     * a ROM which cannot be read, is reported in its result and does not stop
+     * the others.
+     *
+     * @param jobs the jobs to run
+     * @return the results, in the order of the jobs
+     */
+    public Report run(List<Job> jobs) {
+        long start = System.nanoTime();
+        List<ForkJoinTask<HeadlessRunner.Result>> tasks = new ArrayList<>(jobs.size());
+        for (Job job : jobs) {
+            tasks.add(pool.submit(() -> runJob(job)));
+        }
+        List<HeadlessRunner.Result> results = new ArrayList<>(jobs.size());
+        for (ForkJoinTask<HeadlessRunner.Result> task : tasks) {
+            results.add(task.join());
+        }
+        return new Report(jobs, results, System.nanoTime() - start);
+    }
+
+    private HeadlessRunner.Result runJob(Job job) {
+        try {
+            Chip8 chip8 = roms.createFromRom(job.rom);
+            chip8.setSeed(job.seed);
+            HeadlessRunner runner = new HeadlessRunner(chip8, engine.apply(chip8), job.cyclesPerFrame);
+            runner.setInputScript(job.inputScript);
+            runner.setMetrics(metrics);
+            return runner.run(job.cycles);
+        } catch (IOException | RuntimeException ex) {
+            return HeadlessRunner.Result.failed(ex.toString());
+        }
+    }
+
+    /**
+     * @return the metrics updated by every job of the farm
+     */
+    public EmulatorMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * A ROM to run with its input and budget.
+     */
+    public static final class Job {
+
+        private final Path rom;
+        private final InputScript inputScript;
+        private final long cycles;
+        private final int cyclesPerFrame;
+        private final long seed;
+
+        /**
+         * A job with its random numbers seeded with 0.
+         *
+         * @param rom the ROM to load
+         * @param inputScript keypad input, {@link InputScript#EMPTY} for none
+         * @param cycles the number of cycles to run
+         * @param cyclesPerFrame cycles per 60 hertz frame and timer tick
+         */
+        public Job(Path rom, InputScript inputScript, long cycles, int cyclesPerFrame) {
+            this(rom, inputScript, cycles, cyclesPerFrame, 0);
+        }
+
+        /**
+         * @param rom the ROM to load
+         * @param inputScript keypad input, {@link InputScript#EMPTY} for none
+         * @param cycles the number of cycles to run
+         * @param cyclesPerFrame cycles per 60 hertz frame and timer tick
+         * @param seed seed of the random numbers
+         */
+        public Job(Path rom, InputScript inputScript, long cycles, int cyclesPerFrame, long seed) {
+            if (cyclesPerFrame < 1) {
+                throw new IllegalArgumentException("Cycles per frame must be at least 1");
+            }
+            this.rom = rom;
+            this.inputScript = inputScript;
+            this.cycles = cycles;
+            this.cyclesPerFrame = cyclesPerFrame;
+            this.seed = seed;
+        }
+
+        public Path getRom() {
+            return rom;
+        }
+    }
+
+    /**
+     * The results of a batch of jobs.
+     */
+    public static final class Report {
+
+        private final List<Job> jobs;
+        private final List<HeadlessRunner.Result> results;
+        private final long elapsedNanos;
+
+        private Report(List<Job> jobs, List<HeadlessRunner.Result> results, long elapsedNanos) {
+            this.jobs = Collections.unmodifiableList(new ArrayList<>(jobs));
+            this.results = Collections.unmodifiableList(results);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<HeadlessRunner.Result> getResults() {
+            return results;
+        }
+
+        /**
+         * @return wall clock time of the whole batch
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return cycles run by all jobs together
+         */
+        public long getCycles() {
+            long cycles = 0;
+            for (HeadlessRunner.Result result : results) {
+                cycles += result.getCycles();
+            }
+            return cycles;
+        }
+
+        /**
+         * @return the number of jobs which stopped with an error
+         */
+        public int getErrors() {
+            int errors = 0;
+            for (HeadlessRunner.Result result : results) {
+                if (result.getError() != null) {
+                    errors++;
+                }
+            }
+            return errors;
+        }
+
+        /**
+         * @return aggregate instructions per second over all jobs, by wall
+         * clock time
+         */
+        public double getInstructionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : getCycles() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return the totals and every result as a JSON object
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder(64 + 256 * results.size());
+            json.append("{\"jobs\":").append(results.size());
+            json.append(",\"errors\":").append(getErrors());
+            json.append(",\"cycles\":").append(getCycles());
+            json.append(",\"elapsedNanos\":").append(elapsedNanos);
+            json.append(",\"instructionsPerSecond\":").append((long) getInstructionsPerSecond());
+            json.append(",\"results\":[");
+            for (int i = 0; i < results.size(); i++) {
+                json.append(i == 0 ? "" : ",").append(results.get(i).toJson(jobs.get(i).getRom().toString()));
+            }
+            json.append("]}");
+            return json.toString();
+        }
+    }
+
+}
@@ -1,62 +1,126 @@
 package com.cabrales.console.chip8;
 
-import static java.lang.Integer.toHexString;
-import javax.swing.table.DefaultTableModel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import com.cabrales.console.chip8.util.TripleBuffer;
 
 /**
+ * The registers of a Chip8 as a two column table of names and hex values.
  *
+ * {@link #update(Chip8)} is called by the thread running the machine, once a
+ * frame or after a step. It only samples the registers and, when something
+ * changed since the last sample, publishes them through a
+ * {@link TripleBuffer}. The table itself is changed on the EDT, which picks
+ * up the newest sample, formats the values that changed and fires one event
+ * covering the changed rows. Samples published while the EDT is busy are
+ * skipped.
  */
-public class Chip8Model extends DefaultTableModel {
+public class Chip8Model extends AbstractTableModel {
 
     private static final long serialVersionUID = 1L;
 
+    private static final String[] COLUMNS = new String[]{"", "V"};
+    private static final String[] NAMES = new String[]{
+        "V0", "V1", "V2", "V3", "V4", "V5", "V6", "V7",
+        "V8", "V9", "VA", "VB", "VC", "VD", "VE", "VF",
+        "", "I", "PC", "SP"
+    };
+    private static final int BLANK_ROW = 16;
+    private static final String[] HEX = new String[0x100];
+
+    static {
+        for (int i = 0; i < HEX.length; i++) {
+            HEX[i] = Integer.toHexString(i);
+        }
+    }
+
+    // Written by the thread running the machine
+    private final transient TripleBuffer samples = new TripleBuffer(NAMES.length);
+    private final long[] lastSample = new long[NAMES.length];
+    private boolean sampled = false;
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    // Only used on the EDT
+    private final long[] shown = new long[NAMES.length];
+    private final String[] values = new String[NAMES.length];
+
     public Chip8Model() {
-        super(20, 2);
-        super.setColumnIdentifiers(new String[]{"", "V"});
-        super.setValueAt("V0", 0, 0);
-        super.setValueAt("V1", 1, 0);
-        super.setValueAt("V2", 2, 0);
-        super.setValueAt("V3", 3, 0);
-        super.setValueAt("V4", 4, 0);
-        super.setValueAt("V5", 5, 0);
-        super.setValueAt("V6", 6, 0);
-        super.setValueAt("V7", 7, 0);
-        super.setValueAt("V8", 8, 0);
-        super.setValueAt("V9", 9, 0);
-        super.setValueAt("VA", 10, 0);
-        super.setValueAt("VB", 11, 0);
-        super.setValueAt("VC", 12, 0);
-        super.setValueAt("VD", 13, 0);
-        super.setValueAt("VE", 14, 0);
-        super.setValueAt("VF", 15, 0);
-        super.setValueAt("", 16, 0);
-        super.setValueAt("I", 17, 0);
-        super.setValueAt("PC", 18, 0);
-        super.setValueAt("SP", 19, 0);
-    }
-    
+        for (int row = 0; row < values.length; row++) {
+            values[row] = "";
+        }
+    }
+
+    /**
+     * Samples the registers of the machine and, if any changed, updates the
+     * table on the EDT.
+     *
+     * @param chip8 the machine to show
+     */
     public void update(Chip8 chip8) {
-        setValueAt(toHexString(chip8.getV0()), 0, 1);
-        setValueAt(toHexString(chip8.getV1()), 1, 1);
-        setValueAt(toHexString(chip8.getV2()), 2, 1);
-        setValueAt(toHexString(chip8.getV3()), 3, 1);
-        setValueAt(toHexString(chip8.getV4()), 4, 1);
-        setValueAt(toHexString(chip8.getV5()), 5, 1);
-        setValueAt(toHexString(chip8.getV6()), 6, 1);
-        setValueAt(toHexString(chip8.getV7()), 7, 1);
-        setValueAt(toHexString(chip8.getV8()), 8, 1);
-        setValueAt(toHexString(chip8.getV9()), 9, 1);
-        setValueAt(toHexString(chip8.getVA()), 10, 1);
-        setValueAt(toHexString(chip8.getVB()), 11, 1);
-        setValueAt(toHexString(chip8.getVC()), 12, 1);
-        setValueAt(toHexString(chip8.getVD()), 13, 1);
-        setValueAt(toHexString(chip8.getVE()), 14, 1);
-        setValueAt(toHexString(chip8.getVF()), 15, 1);
-        setValueAt("", 16, 1);
-        setValueAt(toHexString(chip8.getiRegister()), 17, 1);
-        setValueAt(toHexString(chip8.getPc()), 18, 1);
-        setValueAt(toHexString(chip8.getSp()), 19, 1);
-    }
-    
+        long[] sample = samples.back();
+        for (int i = 0; i < 0x10; i++) {
+            sample[i] = chip8.getVX(i);
+        }
+        sample[17] = chip8.getiRegister();
+        sample[18] = chip8.getPc();
+        sample[19] = chip8.getSp();
+        if (sampled && Arrays.equals(sample, lastSample)) {
+            return;
+        }
+        System.arraycopy(sample, 0, lastSample, 0, sample.length);
+        samples.publish();
+        sampled = true;
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::apply);
+        }
+    }
+
+    // Shows the newest sample, on the EDT
+    private void apply() {
+        scheduled.set(false);
+        long[] sample = samples.front();
+        int first = -1;
+        int last = -1;
+        for (int row = 0; row < sample.length; row++) {
+            if (row == BLANK_ROW || (sample[row] == shown[row] && !values[row].isEmpty())) {
+                continue;
+            }
+            shown[row] = sample[row];
+            values[row] = hex((int) sample[row]);
+            if (first < 0) {
+                first = row;
+            }
+            last = row;
+        }
+        if (first >= 0) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    private static String hex(int value) {
+        return value < HEX.length ? HEX[value] : Integer.toHexString(value);
+    }
+
+    @Override
+    public int getRowCount() {
+        return NAMES.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return column == 0 ? NAMES[row] : values[row];
+    }
 
 }
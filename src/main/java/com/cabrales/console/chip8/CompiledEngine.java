@@ -0,0 +1,320 @@
+package com.cabrales.console.chip8;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Execution engine which compiles the code reachable in a loaded ROM to JVM
+ * bytecode, so that the JIT compiles the ROM itself instead of the
+ * interpreter running it.
+ *
+ * Starting from the program counter the control flow of the ROM is followed
+ * through jumps, calls, returns and both sides of every skip and split into
+ * basic blocks, which end at the same instructions as in {@link BlockEngine}.
+ * {@link BlockCompiler} writes one class with a method per block for all the
+ * blocks found, and each class is defined by its own class loader so it can
+ * be unloaded once its code is dropped. Register and flow instructions become
+ * straight-line bytecode on local variables, everything else is handed to
+ * the interpreter with the machine state it expects.
+ *
+ * A block only runs as a whole, when fewer instructions are left to run the
+ * rest is interpreted with {@link Chip8#cycle()}. The target of an indirect
+ * BNNN jump can not be known ahead of time, the code it lands on is compiled
+ * in a new class the first time it is reached. Blocks which overlap an
+ * address written by FX33 or FX55 are dropped and the written addresses are
+ * self-modifying code which is always interpreted from then on. An entry
+ * point where no block could be compiled is only tried again after memory
+ * around it is written or replaced.
+ */
+public final class CompiledEngine implements ExecutionEngine, WriteListener {
+
+    private static final int MEM_SIZE = 4096;
+    private static final String CLASS_NAME = CompiledEngine.class.getPackage().getName() + ".CompiledRom";
+    private static final AtomicInteger CLASS_COUNT = new AtomicInteger();
+
+    private final Chip8 chip8;
+    private final Machine machine;
+    private final Program[] programs = new Program[MEM_SIZE];
+    private final int[] lengths = new int[MEM_SIZE];
+    private final boolean[] modified = new boolean[MEM_SIZE];
+    // Entry points where nothing could be compiled, until memory changes
+    private final boolean[] interpretOnly = new boolean[MEM_SIZE];
+    private final boolean[] found = new boolean[MEM_SIZE];
+    private final int[] worklist = new int[2 * MEM_SIZE];
+
+    public CompiledEngine(Chip8 chip8) {
+        this.chip8 = chip8;
+        this.machine = new Chip8Machine(chip8);
+        chip8.setWriteListener(this);
+        int pc = chip8.getPc();
+        if (pc >= 0 && pc < MEM_SIZE && !compile(pc)) {
+            interpretOnly[pc] = true;
+        }
+    }
+
+    @Override
+    public void run(int instructions) {
+        while (instructions > 0) {
+            int pc = chip8.getPc();
+            int length = pc >= 0 && pc < MEM_SIZE ? lengths[pc] : 0;
+            if (length == 0 && pc >= 0 && pc < MEM_SIZE && !modified[pc] && !interpretOnly[pc]) {
+                if (compile(pc)) {
+                    length = lengths[pc];
+                } else {
+                    interpretOnly[pc] = true;
+                }
+            }
+            if (length == 0 || length > instructions) {
+                chip8.cycle();
+                instructions--;
+                continue;
+            }
+            chip8.setPc(programs[pc].run(machine, pc));
+            instructions -= length;
+        }
+    }
+
+    @Override
+    public void memoryWritten(int from, int to) {
+        int first = Math.max(0, from - 2 * BlockCompiler.MAX_BLOCK_LENGTH + 1);
+        int last = Math.min(MEM_SIZE - 1, to);
+        for (int address = first; address <= last; address++) {
+            if (lengths[address] > 0 && address + 2 * lengths[address] > from) {
+                lengths[address] = 0;
+                programs[address] = null;
+            }
+        }
+        for (int address = Math.max(0, from); address <= last; address++) {
+            modified[address] = true;
+        }
+        for (int address = Math.max(0, from - 1); address <= last; address++) {
+            interpretOnly[address] = false;
+        }
+    }
+
+    @Override
+    public void memoryReplaced() {
+        Arrays.fill(lengths, 0);
+        Arrays.fill(programs, null);
+        Arrays.fill(modified, false);
+        Arrays.fill(interpretOnly, false);
+    }
+
+    /**
+     * Compiles every block reachable from the entry point which has not been
+     * compiled yet into a new class.
+     *
+     * @return false if there is no block at the entry point
+     */
+    private boolean compile(int entry) {
+        if (entry + 1 >= MEM_SIZE || modified[entry] || modified[entry + 1]) {
+            return false;
+        }
+        BlockCompiler compiler = new BlockCompiler(chip8, CLASS_NAME + CLASS_COUNT.incrementAndGet());
+        int[] starts = new int[16];
+        int[] blockLengths = new int[16];
+        Arrays.fill(found, false);
+
+        int size = 0;
+        worklist[size++] = entry;
+        while (size > 0) {
+            int start = worklist[--size];
+            if (start < 0 || start >= MEM_SIZE || lengths[start] > 0 || found[start]) {
+                continue;
+            }
+            found[start] = true;
+
+            int address = start;
+            int length = 0;
+            int instruction = 0;
+            int id = Opcodes.ILLEGAL;
+            while (length < BlockCompiler.MAX_BLOCK_LENGTH && address + 1 < MEM_SIZE
+                    && !modified[address] && !modified[address + 1]) {
+                instruction = chip8.instructionAt(address);
+                id = Opcodes.lookup(instruction);
+                length++;
+                address += 2;
+                if (BlockEngine.endsBlock(id)) {
+                    break;
+                }
+            }
+            if (length == 0) {
+                continue;
+            }
+
+            int count = compiler.getBlockCount();
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, 2 * count);
+                blockLengths = Arrays.copyOf(blockLengths, 2 * count);
+            }
+            starts[count] = start;
+            blockLengths[count] = length;
+            compiler.addBlock(start, length);
+
+            // address is now right after the last instruction of the block
+            if (size + 2 > worklist.length) {
+                continue;
+            }
+            if (!BlockEngine.endsBlock(id)) {
+                worklist[size++] = address;
+                continue;
+            }
+            switch (id) {
+                case Opcodes.JP:
+                    worklist[size++] = instruction & 0xFFF;
+                    break;
+                case Opcodes.CALL:
+                    worklist[size++] = address;
+                    worklist[size++] = instruction & 0xFFF;
+                    break;
+                case Opcodes.SE_VX_NN:
+                case Opcodes.SNE_VX_NN:
+                case Opcodes.SE_VX_VY:
+                case Opcodes.SNE_VX_VY:
+                case Opcodes.SKP:
+                case Opcodes.SKNP:
+                    worklist[size++] = address + 2;
+                    worklist[size++] = address;
+                    break;
+                case Opcodes.LD_VX_K:
+                case Opcodes.LD_B_VX:
+                case Opcodes.LD_MEM_VX:
+                    worklist[size++] = address;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        int count = compiler.getBlockCount();
+        if (count == 0) {
+            return false;
+        }
+        Program program = load(compiler);
+        for (int i = 0; i < count; i++) {
+            programs[starts[i]] = program;
+            lengths[starts[i]] = blockLengths[i];
+        }
+        return lengths[entry] > 0;
+    }
+
+    private static Program load(BlockCompiler compiler) {
+        byte[] classFile = compiler.toClassFile();
+        try {
+            Class<?> type = new ProgramLoader().define(classFile);
+            return (Program) type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            Throwable cause = ex instanceof InvocationTargetException ? ex.getCause() : ex;
+            throw new IllegalStateException("Could not load compiled ROM code", cause);
+        }
+    }
+
+    /**
+     * The machine as seen by compiled code. The classes written by
+     * {@link BlockCompiler} are defined by their own class loader and can only
+     * call public methods, so this is public but not meant to be used outside
+     * of this engine.
+     */
+    public interface Machine {
+
+        int getV(int x);
+
+        void setV(int x, int value);
+
+        int getI();
+
+        void setI(int value);
+
+        int getPc();
+
+        void setPc(int pc);
+
+        /**
+         * Counts the given number of cycles, ticking the timers as often as
+         * they would have ticked for that many calls to {@link Chip8#cycle()}.
+         */
+        void advance(int cycles);
+
+        /**
+         * Executes an instruction which has been decoded by {@link Opcodes}.
+         * The program counter has to point after the instruction already.
+         */
+        void execute(int opcodeId, int instruction);
+    }
+
+    /**
+     * Implemented by every class written by {@link BlockCompiler}.
+     */
+    public interface Program {
+
+        /**
+         * Runs the block at the given address.
+         *
+         * @return the address to continue at, or -1 if this program has no
+         * block at the address
+         */
+        int run(Machine machine, int address);
+    }
+
+    private static final class Chip8Machine implements Machine {
+
+        private final Chip8 chip8;
+
+        private Chip8Machine(Chip8 chip8) {
+            this.chip8 = chip8;
+        }
+
+        @Override
+        public int getV(int x) {
+            return chip8.getVX(x);
+        }
+
+        @Override
+        public void setV(int x, int value) {
+            chip8.setVX(value, x);
+        }
+
+        @Override
+        public int getI() {
+            return chip8.getiRegister();
+        }
+
+        @Override
+        public void setI(int value) {
+            chip8.setiRegister(value);
+        }
+
+        @Override
+        public int getPc() {
+            return chip8.getPc();
+        }
+
+        @Override
+        public void setPc(int pc) {
+            chip8.setPc(pc);
+        }
+
+        @Override
+        public void advance(int cycles) {
+            chip8.updateTimers(cycles);
+        }
+
+        @Override
+        public void execute(int opcodeId, int instruction) {
+            chip8.execute(opcodeId, instruction);
+        }
+    }
+
+    private static final class ProgramLoader extends ClassLoader {
+
+        private ProgramLoader() {
+            super(CompiledEngine.class.getClassLoader());
+        }
+
+        private Class<?> define(byte[] classFile) {
+            return defineClass(null, classFile, 0, classFile.length);
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.cabrales.console.chip8;
+
+/**
+ * Something which can execute Chip8 instructions.
+ *
+ * {@link Chip8} itself interprets one instruction at a time. {@link BlockEngine}
+ * and {@link CompiledEngine} run the same machine from cached translations of
+ * its memory and must leave it in exactly the same state.
+ */
+public interface ExecutionEngine {
+
+    /**
+     * Executes the given number of instructions.
+     *
+     * @param instructions the number of instructions to execute
+     */
+    void run(int instructions);
+
+    /**
+     * Executes a single instruction.
+     */
+    default void cycle() {
+        run(1);
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.cabrales.console.chip8;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.Function;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.InputScript;
+import com.cabrales.console.chip8.util.MoviePlayer;
+import com.cabrales.console.chip8.util.MovieRecorder;
+import com.cabrales.console.chip8.util.WavFileSink;
+
+/**
+ * Runs a ROM without a window and prints the result as JSON.
+ *
+ * <pre>
+ * HeadlessMain rom [--frames n | --cycles n] [--cycles-per-frame n]
+ *              [--input script | --movie movie]
+ *              [--engine interpreter|block|compiled] [--frame-hashes]
+ *              [--seed n] [--profile stacks] [--wav file]
+ * </pre>
+ *
+ * With --profile the ROM is run by a {@link ProfilingEngine} instead of the
+ * chosen engine. Its report is printed to standard error and the collapsed
+ * call stacks are written to the given file.
+ *
+ * With --wav the sound is written to a WAV file, 1/60 of a second for every
+ * frame run, instead of being discarded.
+ *
+ * The random numbers are seeded with 0 unless a seed is given, so running the
+ * same ROM twice gives the same result.
+ *
+ * A movie recorded with {@link MovieRecorder} starts from its own snapshot of
+ * the machine, with its own timer settings, and replays the recorded keys.
+ *
+ * Nothing here touches AWT or the audio line, so it runs under
+ * java.awt.headless=true.
+ */
+public final class HeadlessMain {
+
+    private static final String USAGE = "Usage: HeadlessMain rom [--frames n | --cycles n] [--cycles-per-frame n]"
+            + " [--input script | --movie movie] [--engine interpreter|block|compiled] [--frame-hashes] [--seed n] [--profile stacks]"
+            + " [--wav file]";
+
+    private HeadlessMain() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        String rom = args[0];
+        long frames = 600;
+        long cycles = -1;
+        int cyclesPerFrame = 10;
+        String input = null;
+        String movie = null;
+        Function<Chip8, ExecutionEngine> engineFactory = engineFactory("interpreter");
+        boolean frameHashes = false;
+        long seed = 0;
+        String profile = null;
+        String wav = null;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--frames":
+                        frames = Long.parseLong(args[++i]);
+                        break;
+                    case "--cycles":
+                        cycles = Long.parseLong(args[++i]);
+                        break;
+                    case "--cycles-per-frame":
+                        cyclesPerFrame = Integer.parseInt(args[++i]);
+                        break;
+                    case "--input":
+                        input = args[++i];
+                        break;
+                    case "--movie":
+                        movie = args[++i];
+                        break;
+                    case "--engine":
+                        engineFactory = engineFactory(args[++i]);
+                        break;
+                    case "--frame-hashes":
+                        frameHashes = true;
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--profile":
+                        profile = args[++i];
+                        break;
+                    case "--wav":
+                        wav = args[++i];
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+
+            if (input != null && movie != null) {
+                throw new IllegalArgumentException("Only one of --input and --movie can be given");
+            }
+
+            Chip8 chip8 = Chip8Utils.createFromRom(Paths.get(rom));
+            chip8.setSeed(seed);
+            ExecutionEngine engine = engineFactory.apply(chip8);
+            ProfilingEngine profiler = null;
+            if (profile != null) {
+                profiler = new ProfilingEngine(chip8);
+                engine = profiler;
+            }
+            HeadlessRunner runner = new HeadlessRunner(chip8, engine, cyclesPerFrame);
+            runner.setRecordFrameHashes(frameHashes);
+            if (input != null) {
+                runner.setInputScript(InputScript.parse(Paths.get(input)));
+            }
+            WavFileSink sound = null;
+            if (wav != null) {
+                sound = new WavFileSink(Paths.get(wav));
+                chip8.setAudioSink(sound);
+            }
+            MoviePlayer player = null;
+            if (movie != null) {
+                // Restores the machine, after the runner set up its timers
+                player = new MoviePlayer(Paths.get(movie), chip8);
+                chip8.setKeypad(player);
+            }
+            HeadlessRunner.Result result = runner.run(cycles >= 0 ? cycles : frames * cyclesPerFrame);
+            if (player != null) {
+                player.close();
+            }
+            if (sound != null) {
+                sound.close();
+            }
+            if (profiler != null) {
+                profiler.writeReport(System.err);
+                try (Writer stacks = Files.newBufferedWriter(Paths.get(profile), StandardCharsets.UTF_8)) {
+                    profiler.writeCollapsedStacks(stacks);
+                }
+            }
+            System.out.println(result.toJson(rom));
+            if (result.getError() != null) {
+                System.exit(1);
+            }
+        } catch (IOException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    static Function<Chip8, ExecutionEngine> engineFactory(String name) {
+        switch (name) {
+            case "interpreter":
+                return chip8 -> chip8;
+            case "block":
+                return BlockEngine::new;
+            case "compiled":
+                return CompiledEngine::new;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + name);
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package com.cabrales.console.chip8;
+
+import java.util.Arrays;
+import com.cabrales.console.chip8.util.AudioSink;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.EmulatorMetrics;
+import com.cabrales.console.chip8.util.InputScript;
+
+/**
+ * Runs a Chip8 for a fixed number of cycles as fast as possible, without a
+ * window or sound.
+ *
+ * The timers are counted in cycles, one tick per frame, and input comes from
+ * an {@link InputScript} through a keypad of its own, so the same ROM, script
+ * and budget always end in the same state and several runners can work side
+ * by side.
+ */
+public final class HeadlessRunner {
+
+    // Cycles run between updates of the metrics
+    private static final int METRICS_CYCLES = 1 << 16;
+
+    private final Chip8 chip8;
+    private final ExecutionEngine engine;
+    private final int cyclesPerFrame;
+    private InputScript inputScript = InputScript.EMPTY;
+    private int nextEvent = 0;
+    private int keys = 0;
+    private boolean recordFrameHashes = false;
+    private EmulatorMetrics metrics;
+
+    /**
+     * @param chip8 the machine to run
+     * @param engine the engine executing the machine, may be the machine itself
+     * @param cyclesPerFrame cycles per 60 hertz frame and timer tick
+     */
+    public HeadlessRunner(Chip8 chip8, ExecutionEngine engine, int cyclesPerFrame) {
+        if (cyclesPerFrame < 1) {
+            throw new IllegalArgumentException("Cycles per frame must be at least 1");
+        }
+        this.chip8 = chip8;
+        this.engine = engine;
+        this.cyclesPerFrame = cyclesPerFrame;
+        chip8.setAudioSink(AudioSink.NULL);
+        chip8.setCyclesPerTick(cyclesPerFrame);
+        chip8.setKeypad(() -> keys);
+    }
+
+    /**
+     * @param inputScript keypad input, timed by the cycle count of the machine
+     */
+    public void setInputScript(InputScript inputScript) {
+        this.inputScript = inputScript;
+        this.nextEvent = 0;
+    }
+
+    /**
+     * @param recordFrameHashes true to hash the display at the end of every
+     * frame
+     */
+    public void setRecordFrameHashes(boolean recordFrameHashes) {
+        this.recordFrameHashes = recordFrameHashes;
+    }
+
+    /**
+     * @param metrics where the cycles and frames run are counted while
+     * running, or null for nowhere
+     */
+    public void setMetrics(EmulatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Runs the machine until the budget is used up or an instruction fails.
+     *
+     * @param cycles the number of cycles to run
+     * @return the final state and timings
+     */
+    public Result run(long cycles) {
+        long[] frameHashes = new long[recordFrameHashes ? 64 : 0];
+        int frames = 0;
+        String error = null;
+        long firstCycle = chip8.getCycleCount();
+        long end = firstCycle + cycles;
+        long start = System.nanoTime();
+        try {
+            long now;
+            while ((now = chip8.getCycleCount()) < end) {
+                while (nextEvent < inputScript.size() && inputScript.getCycle(nextEvent) <= now) {
+                    keys = (keys & ~inputScript.getReleased(nextEvent)) | inputScript.getPressed(nextEvent);
+                    nextEvent++;
+                }
+                long next = end;
+                if (nextEvent < inputScript.size()) {
+                    next = Math.min(next, inputScript.getCycle(nextEvent));
+                }
+                if (recordFrameHashes) {
+                    next = Math.min(next, (now / cyclesPerFrame + 1) * cyclesPerFrame);
+                }
+                if (metrics != null) {
+                    next = Math.min(next, now + METRICS_CYCLES);
+                }
+                next = Math.min(next, now + Integer.MAX_VALUE);
+                engine.run((int) (next - now));
+                if (metrics != null) {
+                    metrics.addInstructions(next - now);
+                    metrics.addFrames(next / cyclesPerFrame - now / cyclesPerFrame);
+                }
+                if (recordFrameHashes && next % cyclesPerFrame == 0) {
+                    if (frames == frameHashes.length) {
+                        frameHashes = Arrays.copyOf(frameHashes, frames * 2);
+                    }
+                    frameHashes[frames++] = Chip8Utils.hashDisplay(chip8);
+                }
+            }
+        } catch (RuntimeException ex) {
+            error = ex.toString();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Result(chip8, chip8.getCycleCount() - firstCycle, cyclesPerFrame, elapsed, error,
+                Arrays.copyOf(frameHashes, frames));
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static final class Result {
+
+        private final long cycles;
+        private final long frames;
+        private final long elapsedNanos;
+        private final String error;
+        private final int pc;
+        private final int iRegister;
+        private final int sp;
+        private final int delayTimer;
+        private final int soundTimer;
+        private final int[] vRegisters = new int[0x10];
+        private final long displayHash;
+        private final long[] frameHashes;
+
+        private Result(Chip8 chip8, long cycles, int cyclesPerFrame, long elapsedNanos, String error,
+                long[] frameHashes) {
+            this.cycles = cycles;
+            this.frames = cycles / cyclesPerFrame;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+            this.pc = chip8.getPc();
+            this.iRegister = chip8.getiRegister();
+            this.sp = chip8.getSp();
+            this.delayTimer = chip8.getDelayTimer();
+            this.soundTimer = chip8.getSoundTimer();
+            for (int i = 0; i < vRegisters.length; i++) {
+                vRegisters[i] = chip8.getVX(i);
+            }
+            this.displayHash = Chip8Utils.hashDisplay(chip8);
+            this.frameHashes = frameHashes;
+        }
+
+        // A run which failed before the machine could be started
+        private Result(String error) {
+            this.cycles = 0;
+            this.frames = 0;
+            this.elapsedNanos = 0;
+            this.error = error;
+            this.pc = 0;
+            this.iRegister = 0;
+            this.sp = 0;
+            this.delayTimer = 0;
+            this.soundTimer = 0;
+            this.displayHash = 0;
+            this.frameHashes = new long[0];
+        }
+
+        static Result failed(String error) {
+            return new Result(error);
+        }
+
+        public long getCycles() {
+            return cycles;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the exception which stopped the run, or null if the whole
+         * budget was run
+         */
+        public String getError() {
+            return error;
+        }
+
+        public long getDisplayHash() {
+            return displayHash;
+        }
+
+        public long[] getFrameHashes() {
+            return frameHashes.clone();
+        }
+
+        public double getInstructionsPerSecond() {
+            return elapsedNanos == 0 ? 0 : cycles * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @param rom name of the ROM which was run
+         * @return the result as a JSON object
+         */
+        public String toJson(String rom) {
+            StringBuilder json = new StringBuilder(256);
+            json.append("{\"rom\":");
+            appendString(json, rom);
+            json.append(",\"cycles\":").append(cycles);
+            json.append(",\"frames\":").append(frames);
+            json.append(",\"elapsedNanos\":").append(elapsedNanos);
+            json.append(",\"instructionsPerSecond\":").append((long) getInstructionsPerSecond());
+            json.append(",\"error\":");
+            if (error == null) {
+                json.append("null");
+            } else {
+                appendString(json, error);
+            }
+            json.append(",\"state\":{\"pc\":").append(pc);
+            json.append(",\"i\":").append(iRegister);
+            json.append(",\"sp\":").append(sp);
+            json.append(",\"delayTimer\":").append(delayTimer);
+            json.append(",\"soundTimer\":").append(soundTimer);
+            json.append(",\"v\":[");
+            for (int i = 0; i < vRegisters.length; i++) {
+                json.append(i == 0 ? "" : ",").append(vRegisters[i]);
+            }
+            json.append("]},\"displayHash\":");
+            appendString(json, hex(displayHash));
+            json.append(",\"frameHashes\":[");
+            for (int i = 0; i < frameHashes.length; i++) {
+                json.append(i == 0 ? "" : ",");
+                appendString(json, hex(frameHashes[i]));
+            }
+            json.append("]}");
+            return json.toString();
+        }
+
+        private static String hex(long hash) {
+            String digits = Long.toHexString(hash);
+            return "0000000000000000".substring(digits.length()) + digits;
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.cabrales.console.chip8;
+
+/**
+ * Pre-decoded opcode table for the Chip8 interpreter.
+ *
+ * Every one of the 65,536 possible instructions is classified once when the
+ * class is loaded. Executing an instruction is then a single array lookup
+ * followed by a dense switch on the resulting id, which calls the handler of
+ * that opcode.
+ */
+final class Opcodes {
+
+    static final int ILLEGAL = 0;
+    static final int CLS = 1;
+    static final int RET = 2;
+    static final int JP = 3;
+    static final int CALL = 4;
+    static final int SE_VX_NN = 5;
+    static final int SNE_VX_NN = 6;
+    static final int SE_VX_VY = 7;
+    static final int LD_VX_NN = 8;
+    static final int ADD_VX_NN = 9;
+    static final int LD_VX_VY = 10;
+    static final int OR = 11;
+    static final int AND = 12;
+    static final int XOR = 13;
+    static final int ADD_VX_VY = 14;
+    static final int SUB = 15;
+    static final int SHR = 16;
+    static final int SUBN = 17;
+    static final int SHL = 18;
+    static final int SNE_VX_VY = 19;
+    static final int LD_I = 20;
+    static final int JP_V0 = 21;
+    static final int RND = 22;
+    static final int DRW = 23;
+    static final int SKP = 24;
+    static final int SKNP = 25;
+    static final int LD_VX_DT = 26;
+    static final int LD_VX_K = 27;
+    static final int LD_DT_VX = 28;
+    static final int LD_ST_VX = 29;
+    static final int ADD_I_VX = 30;
+    static final int LD_F_VX = 31;
+    static final int LD_B_VX = 32;
+    static final int LD_MEM_VX = 33;
+    static final int LD_VX_MEM = 34;
+
+    static final int COUNT = 35;
+
+    private static final String[] NAMES = new String[]{
+        "ILLEGAL", "CLS", "RET", "JP", "CALL", "SE Vx, nn", "SNE Vx, nn", "SE Vx, Vy",
+        "LD Vx, nn", "ADD Vx, nn", "LD Vx, Vy", "OR", "AND", "XOR", "ADD Vx, Vy", "SUB",
+        "SHR", "SUBN", "SHL", "SNE Vx, Vy", "LD I, nnn", "JP V0, nnn", "RND", "DRW",
+        "SKP", "SKNP", "LD Vx, DT", "LD Vx, K", "LD DT, Vx", "LD ST, Vx", "ADD I, Vx", "LD F, Vx",
+        "LD B, Vx", "LD [I], Vx", "LD Vx, [I]"
+    };
+
+    private static final byte[] TABLE = new byte[0x10000];
+
+    static {
+        for (int instruction = 0; instruction < TABLE.length; instruction++) {
+            TABLE[instruction] = (byte) decode(instruction);
+        }
+    }
+
+    private Opcodes() {
+    }
+
+    /**
+     * Returns the pre-decoded id of an instruction.
+     *
+     * @param instruction the two byte instruction
+     * @return one of the opcode ids declared in this class
+     */
+    static int lookup(int instruction) {
+        return TABLE[instruction & 0xFFFF];
+    }
+
+    /**
+     * @param id one of the opcode ids declared in this class
+     * @return the mnemonic of the opcode
+     */
+    static String name(int id) {
+        return NAMES[id];
+    }
+
+    /**
+     * Classifies an instruction by walking the opcode groups. This is only used
+     * to build the lookup table.
+     *
+     * @param instruction the two byte instruction
+     * @return one of the opcode ids declared in this class
+     */
+    static int decode(int instruction) {
+        switch (instruction & 0xF000) {
+            case 0x0000:
+                switch (instruction) {
+                    case 0x00E0:
+                        return CLS;
+                    case 0x00EE:
+                        return RET;
+                    default:
+                        return ILLEGAL;
+                }
+            case 0x1000:
+                return JP;
+            case 0x2000:
+                return CALL;
+            case 0x3000:
+                return SE_VX_NN;
+            case 0x4000:
+                return SNE_VX_NN;
+            case 0x5000:
+                return SE_VX_VY;
+            case 0x6000:
+                return LD_VX_NN;
+            case 0x7000:
+                return ADD_VX_NN;
+            case 0x8000:
+                switch (instruction & 0xF) {
+                    case 0x0:
+                        return LD_VX_VY;
+                    case 0x1:
+                        return OR;
+                    case 0x2:
+                        return AND;
+                    case 0x3:
+                        return XOR;
+                    case 0x4:
+                        return ADD_VX_VY;
+                    case 0x5:
+                        return SUB;
+                    case 0x6:
+                        return SHR;
+                    case 0x7:
+                        return SUBN;
+                    case 0xE:
+                        return SHL;
+                    default:
+                        return ILLEGAL;
+                }
+            case 0x9000:
+                return SNE_VX_VY;
+            case 0xA000:
+                return LD_I;
+            case 0xB000:
+                return JP_V0;
+            case 0xC000:
+                return RND;
+            case 0xD000:
+                return DRW;
+            case 0xE000:
+                switch (instruction & 0xFF) {
+                    case 0x9E:
+                        return SKP;
+                    case 0xA1:
+                        return SKNP;
+                    default:
+                        return ILLEGAL;
+                }
+            case 0xF000:
+                switch (instruction & 0xFF) {
+                    case 0x07:
+                        return LD_VX_DT;
+                    case 0x0A:
+                        return LD_VX_K;
+                    case 0x15:
+                        return LD_DT_VX;
+                    case 0x18:
+                        return LD_ST_VX;
+                    case 0x1E:
+                        return ADD_I_VX;
+                    case 0x29:
+                        return LD_F_VX;
+                    case 0x33:
+                        return LD_B_VX;
+                    case 0x55:
+                        return LD_MEM_VX;
+                    case 0x65:
+                        return LD_VX_MEM;
+                    default:
+                        return ILLEGAL;
+                }
+            default:
+                return ILLEGAL;
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.cabrales.console.chip8;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Execution engine which interprets like {@link Chip8#cycle()} while counting
+ * where the time goes.
+ *
+ * Every instruction is counted by address and by opcode, backward jumps are
+ * counted as loop iterations, calls by target, and cycles spent in FX0A
+ * waiting for a key are added up. Instructions are also attributed to the
+ * current call path, kept on a shadow stack of call targets which starts out
+ * from the return addresses already on the machine's stack. The counts are
+ * reported as text and as collapsed stacks for flame graph tools.
+ *
+ * Profiling is done entirely by this engine, running the machine any other
+ * way costs nothing extra.
+ */
+public final class ProfilingEngine implements ExecutionEngine {
+
+    private static final int MEM_SIZE = 4096;
+    private static final int TOP = 20;
+
+    private final Chip8 chip8;
+    private final int[] pcCounts = new int[MEM_SIZE];
+    private final long[] opcodeCounts = new long[Opcodes.COUNT];
+    private final int[] backJumps = new int[MEM_SIZE];
+    private final int[] calls = new int[MEM_SIZE];
+    private long instructions = 0;
+    private long returns = 0;
+
+    private long keyWaits = 0;
+    private long waitCycles = 0;
+    private long waitNanos = 0;
+    private long waitStart = -1;
+
+    // Call tree, node 0 is the code outside of any known call
+    private final Map<Long, Integer> children = new HashMap<>();
+    private int[] parents = new int[64];
+    private int[] targets = new int[64];
+    private long[] nodeCounts = new long[64];
+    private int nodes = 1;
+    private int node = 0;
+
+    public ProfilingEngine(Chip8 chip8) {
+        this.chip8 = chip8;
+        // The call instruction sits right before each return address
+        for (int i = 0; i < chip8.getSp(); i++) {
+            int call = chip8.instructionAt(chip8.stackAt(i) - 2);
+            node = child(node, call & 0xFFF);
+        }
+    }
+
+    @Override
+    public void run(int count) {
+        for (int i = 0; i < count; i++) {
+            int pc = chip8.getPc();
+            int instruction = chip8.instructionAt(pc);
+            int id = Opcodes.lookup(instruction);
+            pcCounts[pc]++;
+            opcodeCounts[id]++;
+            nodeCounts[node]++;
+            instructions++;
+
+            chip8.setPc(pc + 2);
+            chip8.updateTimers();
+            chip8.execute(id, instruction);
+
+            switch (id) {
+                case Opcodes.JP:
+                    if ((instruction & 0xFFF) <= pc) {
+                        backJumps[pc]++;
+                    }
+                    break;
+                case Opcodes.CALL:
+                    calls[instruction & 0xFFF]++;
+                    node = child(node, instruction & 0xFFF);
+                    break;
+                case Opcodes.RET:
+                    returns++;
+                    node = parents[node];
+                    break;
+                case Opcodes.LD_VX_K:
+                    if (chip8.getPc() == pc) {
+                        waitCycles++;
+                        if (waitStart < 0) {
+                            waitStart = System.nanoTime();
+                        }
+                    } else {
+                        keyPressed();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void keyPressed() {
+        keyWaits++;
+        if (waitStart >= 0) {
+            waitNanos += System.nanoTime() - waitStart;
+            waitStart = -1;
+        }
+    }
+
+    // Returns the node for a call to target made from the given node
+    private int child(int parent, int target) {
+        Long key = ((long) parent << 16) | target;
+        Integer child = children.get(key);
+        if (child != null) {
+            return child;
+        }
+        if (nodes == parents.length) {
+            parents = Arrays.copyOf(parents, nodes * 2);
+            targets = Arrays.copyOf(targets, nodes * 2);
+            nodeCounts = Arrays.copyOf(nodeCounts, nodes * 2);
+        }
+        parents[nodes] = parent;
+        targets[nodes] = target;
+        children.put(key, nodes);
+        return nodes++;
+    }
+
+    /**
+     * @return the number of instructions run
+     */
+    public long getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * @param address an address in memory
+     * @return the number of times the instruction at the address ran
+     */
+    public int getCount(int address) {
+        return pcCounts[address];
+    }
+
+    /**
+     * @param address an address in memory
+     * @return the number of calls made to the address
+     */
+    public int getCalls(int address) {
+        return calls[address];
+    }
+
+    /**
+     * @return the number of FX0A instructions which got a key
+     */
+    public long getKeyWaits() {
+        return keyWaits;
+    }
+
+    /**
+     * @return the number of cycles FX0A spent waiting for a key
+     */
+    public long getWaitCycles() {
+        return waitCycles;
+    }
+
+    /**
+     * @return wall clock time FX0A spent waiting for a key
+     */
+    public long getWaitNanos() {
+        return waitNanos + (waitStart < 0 ? 0 : System.nanoTime() - waitStart);
+    }
+
+    /**
+     * Writes the hottest addresses, the opcode mix, the hottest loops, the
+     * calls and the time spent waiting for keys.
+     *
+     * @param out where to write the report
+     * @throws IOException if writing fails
+     */
+    public void writeReport(Appendable out) throws IOException {
+        out.append(String.format("Instructions: %d%n", instructions));
+
+        out.append(String.format("%nHot addresses:%n"));
+        for (int address : top(pcCounts)) {
+            int instruction = chip8.instructionAt(address);
+            out.append(String.format("  0x%03X %12d %6.2f%%  %04X  %s%n", address, pcCounts[address],
+                    percent(pcCounts[address]), instruction, Opcodes.name(Opcodes.lookup(instruction))));
+        }
+
+        out.append(String.format("%nOpcodes:%n"));
+        Integer[] ids = new Integer[Opcodes.COUNT];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+        Arrays.sort(ids, (a, b) -> Long.compare(opcodeCounts[b], opcodeCounts[a]));
+        for (int id : ids) {
+            if (opcodeCounts[id] > 0) {
+                out.append(String.format("  %-12s %12d %6.2f%%%n", Opcodes.name(id), opcodeCounts[id],
+                        percent(opcodeCounts[id])));
+            }
+        }
+
+        out.append(String.format("%nHot loops:%n"));
+        for (int address : top(backJumps)) {
+            int start = chip8.instructionAt(address) & 0xFFF;
+            long body = 0;
+            for (int i = start; i <= address; i++) {
+                body += pcCounts[i];
+            }
+            out.append(String.format("  0x%03X-0x%03X %12d iterations %12d instructions %6.2f%%%n", start, address,
+                    backJumps[address], body, percent(body)));
+        }
+
+        out.append(String.format("%nCalls:%n"));
+        for (int address : top(calls)) {
+            out.append(String.format("  0x%03X %12d%n", address, calls[address]));
+        }
+        out.append(String.format("  returns %d%n", returns));
+
+        out.append(String.format("%nKey waits: %d, %d cycles, %.1f ms%n", keyWaits, waitCycles,
+                getWaitNanos() / 1e6));
+    }
+
+    /**
+     * Writes the instruction counts per call path in the collapsed stack
+     * format read by flame graph tools, one path per line with the frames
+     * separated by semicolons and followed by the count.
+     *
+     * @param out where to write the stacks
+     * @throws IOException if writing fails
+     */
+    public void writeCollapsedStacks(Appendable out) throws IOException {
+        for (int i = 0; i < nodes; i++) {
+            if (nodeCounts[i] == 0) {
+                continue;
+            }
+            List<String> frames = new ArrayList<>();
+            for (int n = i; n != 0; n = parents[n]) {
+                frames.add(String.format("0x%03X", targets[n]));
+            }
+            out.append("main");
+            for (int f = frames.size() - 1; f >= 0; f--) {
+                out.append(';').append(frames.get(f));
+            }
+            out.append(' ').append(Long.toString(nodeCounts[i])).append('\n');
+        }
+    }
+
+    private double percent(long count) {
+        return instructions == 0 ? 0 : 100.0 * count / instructions;
+    }
+
+    // The addresses with the highest non zero counts, highest first
+    private static int[] top(int[] counts) {
+        Integer[] addresses = new Integer[counts.length];
+        int size = 0;
+        for (int address = 0; address < counts.length; address++) {
+            if (counts[address] > 0) {
+                addresses[size++] = address;
+            }
+        }
+        Arrays.sort(addresses, 0, size, (a, b) -> Integer.compare(counts[b], counts[a]));
+        int[] top = new int[Math.min(TOP, size)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = addresses[i];
+        }
+        return top;
+    }
+
+}
@@ -2,13 +2,21 @@ package com.cabrales.console.chip8;
 
 import com.cabrales.console.chip8.util.Chip8DisplayPanel;
 import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.EmulatorMetrics;
+import com.cabrales.console.chip8.util.FrameScheduler;
+import com.cabrales.console.chip8.util.JavaSoundSink;
+import com.cabrales.console.chip8.util.MovieRecorder;
+import com.cabrales.console.chip8.util.RewindBuffer;
 import java.awt.KeyEventDispatcher;
 import java.awt.KeyboardFocusManager;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.io.File;
 import java.io.IOException;
-import static java.lang.Thread.sleep;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.management.JMException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFileChooser;
@@ -21,45 +29,48 @@ import com.cabrales.console.chip8.util.Input;
 public class SwingMain extends javax.swing.JFrame implements KeyListener {
 
     private static final long serialVersionUID = 1L;
+    // 10 instructions per frame at 60 frames per second is a 600 hertz CPU
+    private static final int INSTRUCTIONS_PER_FRAME = Integer.getInteger("chip8.instructionsPerFrame", 10);
+    // When set, the keys of every ROM opened are recorded to this movie file
+    private static final String MOVIE = System.getProperty("chip8.movie");
 
     final JFileChooser fc = new JFileChooser();
+    // Work handed from the EDT to the runner thread, run at the start of a frame
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+    // Only used on the runner thread
     private Chip8 chip8;
     private boolean running = false;
     private boolean pause = false;
     private boolean step = false;
+    private boolean rewind = false;
+    // Also closed by the shutdown hook
+    private volatile MovieRecorder recorder;
+    // 60 seconds of frames
+    private final RewindBuffer rewindBuffer = new RewindBuffer(60 * FrameScheduler.FRAMES_PER_SECOND, 8 << 20);
 
     /**
      * Creates new form SwingMain
      */
     public SwingMain() {
-        this.chip8Runner = new Thread(() -> {
-            while (true) {
-                try {
-                    if (running) {
-                        if (pause == false || step) {
-                            step = false;
-                            chip8.cycle();
-                            ((Chip8Model) jTable1.getModel()).update(chip8);
-                        }
-                        outputPanel.repaint();
-                    }
-                    sleep(1);
-                } catch (InterruptedException ex) {
-                    Logger.getLogger(SwingMain.class.getName()).log(Level.SEVERE, null, ex);
-                }
-            }
-        });
         initComponents();
+        ((Chip8DisplayPanel) outputPanel).setAccelerated(true);
+        scheduler.setMetrics(metrics);
+        speaker.setMetrics(metrics);
+        try {
+            metrics.register("swing");
+        } catch (JMException ex) {
+            Logger.getLogger(SwingMain.class.getName()).log(Level.WARNING, "Metrics are not published over JMX", ex);
+        }
         KeyboardFocusManager manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
         manager.addKeyEventDispatcher(new KeyEventDispatcher() {
             @Override
             public boolean dispatchKeyEvent(KeyEvent e) {
                 switch (e.getID()) {
                     case KeyEvent.KEY_PRESSED:
-                        Input.press(e.getKeyChar() + "");
+                        Input.press(e.getKeyChar());
                         break;
                     case KeyEvent.KEY_RELEASED:
-                        Input.unpress();
+                        Input.unpress(e.getKeyChar());
                         break;
                     default:
                         break;
@@ -88,6 +99,7 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
         jButton1 = new javax.swing.JButton();
         jButton2 = new javax.swing.JButton();
         jButton3 = new javax.swing.JButton();
+        jButton4 = new javax.swing.JButton();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setBackground(java.awt.Color.white);
@@ -195,6 +207,14 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
             }
         });
 
+        jButton4.setBackground(new java.awt.Color(102, 102, 255));
+        jButton4.setIcon(new javax.swing.ImageIcon(getClass().getResource("/images/rewind.png"))); // NOI18N
+        jButton4.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                jButton4ActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -214,6 +234,8 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(jButton1, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE)
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                                .addComponent(jButton4, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                                 .addComponent(jButton3, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE)))))
                 .addContainerGap())
         );
@@ -230,6 +252,7 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.BASELINE)
                             .addComponent(jButton1, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE)
                             .addComponent(jButton2, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE)
+                            .addComponent(jButton4, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE)
                             .addComponent(jButton3, javax.swing.GroupLayout.PREFERRED_SIZE, 48, javax.swing.GroupLayout.PREFERRED_SIZE))))
                 .addContainerGap())
         );
@@ -243,10 +266,10 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
 
             if (returnVal == JFileChooser.APPROVE_OPTION) {
                 try {
-                    running = false;
                     File file = fc.getSelectedFile();
-                    SwingMain.this.chip8 = Chip8Utils.createFromRom(file);
-                    restartEmulator();
+                    Chip8 loaded = Chip8Utils.createFromRom(file);
+                    commands.add(() -> restartEmulator(loaded));
+                    startRunner();
                 } catch (IOException ex) {
                     Logger.getLogger(SwingMain.class.getName()).log(Level.SEVERE, null, ex);
                     JOptionPane.showMessageDialog(null, ex, "Error", JOptionPane.ERROR_MESSAGE);
@@ -268,21 +291,28 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
     }//GEN-LAST:event_formKeyPressed
 
     private void formKeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_formKeyReleased
-        Input.unpress();
+        Input.unpress(evt.getKeyChar());
     }//GEN-LAST:event_formKeyReleased
 
     private void jButton2ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton2ActionPerformed
-        this.pause = true;
+        commands.add(() -> pause = true);
     }//GEN-LAST:event_jButton2ActionPerformed
 
     private void jButton1ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton1ActionPerformed
-        this.pause = false;
+        commands.add(() -> pause = false);
     }//GEN-LAST:event_jButton1ActionPerformed
 
     private void jButton3ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton3ActionPerformed
-        this.step = true;
+        commands.add(() -> step = true);
     }//GEN-LAST:event_jButton3ActionPerformed
 
+    private void jButton4ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_jButton4ActionPerformed
+        commands.add(() -> {
+            pause = true;
+            rewind = true;
+        });
+    }//GEN-LAST:event_jButton4ActionPerformed
+
     /**
      * @param args the command line arguments
      */
@@ -313,7 +343,9 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new SwingMain().setVisible(true);
+                SwingMain main = new SwingMain();
+                Runtime.getRuntime().addShutdownHook(new Thread(main::closeRecorder));
+                main.setVisible(true);
             }
         });
     }
@@ -324,6 +356,7 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
     private javax.swing.JButton jButton1;
     private javax.swing.JButton jButton2;
     private javax.swing.JButton jButton3;
+    private javax.swing.JButton jButton4;
     private javax.swing.JPanel jPanel1;
     private javax.swing.JScrollPane jScrollPane1;
     private javax.swing.JTable jTable1;
@@ -331,32 +364,86 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
     private javax.swing.JPanel outputPanel;
     // End of variables declaration//GEN-END:variables
 
-    private void restartEmulator() {
+    // Runs on the runner thread
+    private void restartEmulator(Chip8 loaded) {
+        chip8 = loaded;
+        running = false;
         Chip8DisplayPanel panel = (Chip8DisplayPanel) outputPanel;
         panel.setChip8(chip8);
-        if (!chip8Runner.isAlive()) {
-            this.chip8Runner = new Thread(() -> {
-                while (true) {
-                    try {
-                        if (running) {
-                            if (pause == false || step) {
-                                step = false;
-                                chip8.cycle();
-                                ((Chip8Model) jTable1.getModel()).update(chip8);
-                            }
-                            outputPanel.repaint();
-                        }
-                        sleep(1);
-                    } catch (InterruptedException ex) {
-                        Logger.getLogger(SwingMain.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
-            });
-            chip8Runner.start();
+        chip8.setAudioSink(speaker);
+        chip8.setKeypad(Input.getKeypad());
+        rewindBuffer.clear();
+        // The scheduler keeps wall clock time, the timers tick once per frame
+        chip8.setCyclesPerTick(scheduler.getInstructionsPerFrame());
+        if (MOVIE != null) {
+            try {
+                closeRecorder();
+                recorder = new MovieRecorder(Paths.get(MOVIE), chip8, Input.getKeypad());
+                chip8.setKeypad(recorder);
+            } catch (IOException ex) {
+                recorder = null;
+                Logger.getLogger(SwingMain.class.getName()).log(Level.SEVERE, null, ex);
+                java.awt.EventQueue.invokeLater(
+                        () -> JOptionPane.showMessageDialog(null, ex, "Error", JOptionPane.ERROR_MESSAGE));
+                return;
+            }
         }
         running = true;
+    }
+
+    private void startRunner() {
+        if (chip8Runner == null || !chip8Runner.isAlive()) {
+            this.chip8Runner = new Thread(scheduler, "chip8-runner");
+            chip8Runner.setDaemon(true);
+            chip8Runner.start();
+        }
+    }
 
+    private void closeRecorder() {
+        MovieRecorder current = recorder;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ex) {
+                Logger.getLogger(SwingMain.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
     }
+
+    // Called by the scheduler once per frame on the runner thread
+    private void runFrame(int instructions) {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+        if (running) {
+            if (pause == false) {
+                chip8.run(instructions);
+                metrics.addInstructions(instructions);
+                rewindBuffer.capture(chip8);
+                ((Chip8Model) jTable1.getModel()).update(chip8);
+            } else if (rewind) {
+                rewind = false;
+                // Going back in time would break the recorded movie
+                if (recorder == null) {
+                    rewindBuffer.stepBack(chip8);
+                }
+                ((Chip8Model) jTable1.getModel()).update(chip8);
+            } else if (step) {
+                step = false;
+                chip8.cycle();
+                metrics.addInstructions(1);
+                rewindBuffer.capture(chip8);
+                ((Chip8Model) jTable1.getModel()).update(chip8);
+            }
+            ((Chip8DisplayPanel) outputPanel).publish(chip8);
+        }
+    }
+
+    private final FrameScheduler scheduler = new FrameScheduler(INSTRUCTIONS_PER_FRAME, this::runFrame);
+    private final EmulatorMetrics metrics = new EmulatorMetrics();
+    // Only ever fed by the machine currently loaded in this window
+    private final JavaSoundSink speaker = new JavaSoundSink();
     private Thread chip8Runner;
 
     @Override
@@ -370,7 +457,7 @@ public class SwingMain extends javax.swing.JFrame implements KeyListener {
 
     @Override
     public void keyReleased(KeyEvent e) {
-        Input.unpress();
+        Input.unpress(e.getKeyChar());
     }
 
 }
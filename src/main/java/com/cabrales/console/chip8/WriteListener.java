@@ -0,0 +1,20 @@
+package com.cabrales.console.chip8;
+
+/**
+ * Notified when an instruction writes into Chip8 memory, so that anything
+ * caching decoded code can drop what has been overwritten.
+ */
+interface WriteListener {
+
+    /**
+     * @param from first address written
+     * @param to last address written, inclusive
+     */
+    void memoryWritten(int from, int to);
+
+    /**
+     * All of memory was replaced, such as by restoring a snapshot.
+     */
+    void memoryReplaced();
+
+}
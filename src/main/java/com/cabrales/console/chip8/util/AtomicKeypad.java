@@ -0,0 +1,50 @@
+package com.cabrales.console.chip8.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A keypad whose keys are pressed and released from another thread, such as
+ * the AWT event thread, while the emulator reads them.
+ *
+ * All sixteen keys live in one atomic bitmask, so any number of keys can be
+ * held at once and the emulator always sees a consistent set without locking.
+ */
+public final class AtomicKeypad implements Keypad {
+
+    private final AtomicInteger keys = new AtomicInteger();
+
+    @Override
+    public int getKeys() {
+        return keys.get();
+    }
+
+    /**
+     * @param key the key to hold down, 0x0 - 0xF
+     */
+    public void press(int key) {
+        int bit = 1 << (key & 0xF);
+        int current;
+        do {
+            current = keys.get();
+        } while ((current & bit) == 0 && !keys.compareAndSet(current, current | bit));
+    }
+
+    /**
+     * @param key the key to let go of, 0x0 - 0xF
+     */
+    public void release(int key) {
+        int bit = 1 << (key & 0xF);
+        int current;
+        do {
+            current = keys.get();
+        } while ((current & bit) != 0 && !keys.compareAndSet(current, current & ~bit));
+    }
+
+    /**
+     * Lets go of every key.
+     */
+    public void releaseAll() {
+        keys.set(0);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.cabrales.console.chip8.util;
+
+/**
+ * Receives the sound timer of a Chip8 on every 60 hertz timer tick.
+ *
+ * Sounds can go to the speaker with {@link JavaSoundSink}, to a file with
+ * {@link WavFileSink}, or nowhere with {@link #NULL}. A sink belongs to the
+ * machine it is set on, machines never share one.
+ */
+public interface AudioSink {
+
+    /**
+     * Discards the sound.
+     */
+    AudioSink NULL = new AudioSink() {
+        @Override
+        public void play() {
+        }
+
+        @Override
+        public void stop() {
+        }
+    };
+
+    /**
+     * Called on a timer tick while the sound timer is running, should emit
+     * one tick worth of tone.
+     */
+    void play();
+
+    /**
+     * Called on a timer tick while the sound timer is 0.
+     */
+    void stop();
+
+}
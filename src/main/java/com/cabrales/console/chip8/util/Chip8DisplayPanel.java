@@ -2,42 +2,192 @@ package com.cabrales.console.chip8.util;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
+import java.util.Arrays;
 import javax.swing.JPanel;
 import com.cabrales.console.chip8.Chip8;
 
 /**
+ * Paints the Chip8 display.
  *
+ * The display is written pixel by pixel straight into the int array behind a
+ * 64x32 image. When accelerated rendering is turned on that image is copied
+ * into a VolatileImage and scaled onto the panel with a single nearest
+ * neighbour blit done by the graphics pipeline.
+ *
+ * Otherwise, or without a usable VolatileImage, the pixels are scaled up in
+ * software into the int array of a panel sized image with span fills and row
+ * copies, which is then drawn unscaled. Both give the same output.
+ *
+ * The thread running the machine publishes every finished frame through a
+ * {@link TripleBuffer} and painting always reads the newest one, so a frame
+ * is never painted while the machine is drawing it and neither thread waits
+ * for the other. Frames may only be published by one thread.
  */
 public class Chip8DisplayPanel extends JPanel {
-    
+
     private static final long serialVersionUID = 0x203920L;
 
-    private Chip8 chip8 = new Chip8();
-    
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 32;
+    private static final int ON = Color.WHITE.getRGB();
+    private static final int OFF = Color.BLACK.getRGB();
+
+    private final transient TripleBuffer frames = new TripleBuffer(HEIGHT);
+    private final transient BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    private final transient int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    private transient BufferedImage scaled;
+    private transient int[] scaledPixels;
+    private transient VolatileImage volatileImage;
+    private boolean accelerated = false;
+
     @Override
     public void paint(Graphics g) {
-        int width = super.getWidth();
-        int height = super.getHeight();
-        int pixelWidth = width / 64;
-        int pixelHeight = height / 32;
-        byte[] video = chip8.getDisplay();
-        for (int x = 0; x < 64; x++) {
-            for (int y = 0; y < 32; y++) {
-                if (video[y * 64 + x]  == 0) {
-                    g.setColor(Color.BLACK);
-                } else {
-                    g.setColor(Color.WHITE);
+        int pixelWidth = super.getWidth() / WIDTH;
+        int pixelHeight = super.getHeight() / HEIGHT;
+        if (pixelWidth == 0 || pixelHeight == 0) {
+            return;
+        }
+
+        long[] rows = frames.front();
+        for (int y = 0; y < HEIGHT; y++) {
+            long row = rows[y];
+            int offset = y * WIDTH;
+            for (int x = 0; x < WIDTH; x++) {
+                pixels[offset + x] = ((row >>> (WIDTH - 1 - x)) & 1) == 0 ? OFF : ON;
+            }
+        }
+
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        if (accelerated && paintAccelerated(g2, pixelWidth, pixelHeight)) {
+            return;
+        }
+
+        int firstRow = 0;
+        int lastRow = HEIGHT - 1;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            firstRow = Math.max(0, clip.y / pixelHeight);
+            lastRow = Math.min(HEIGHT - 1, (clip.y + clip.height - 1) / pixelHeight);
+        }
+        scale(pixelWidth, pixelHeight, firstRow, lastRow);
+        g2.drawImage(scaled, 0, 0, null);
+    }
+
+    // Scales the given rows of the display into the panel sized image
+    private void scale(int pixelWidth, int pixelHeight, int firstRow, int lastRow) {
+        int width = WIDTH * pixelWidth;
+        int height = HEIGHT * pixelHeight;
+        if (scaled == null || scaled.getWidth() != width || scaled.getHeight() != height) {
+            scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            scaledPixels = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+            firstRow = 0;
+            lastRow = HEIGHT - 1;
+        }
+        for (int y = firstRow; y <= lastRow; y++) {
+            int offset = y * pixelHeight * width;
+            for (int x = 0; x < WIDTH; x++) {
+                int start = offset + x * pixelWidth;
+                Arrays.fill(scaledPixels, start, start + pixelWidth, pixels[y * WIDTH + x]);
+            }
+            for (int line = 1; line < pixelHeight; line++) {
+                System.arraycopy(scaledPixels, offset, scaledPixels, offset + line * width, width);
+            }
+        }
+    }
+
+    // Returns false when no VolatileImage is available for this panel
+    private boolean paintAccelerated(Graphics2D g, int pixelWidth, int pixelHeight) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        if (configuration == null) {
+            return false;
+        }
+        do {
+            if (volatileImage == null
+                    || volatileImage.validate(configuration) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                volatileImage = createVolatileImage(WIDTH, HEIGHT);
+                if (volatileImage == null) {
+                    return false;
                 }
-                g.fillRect(x * pixelWidth, y*pixelHeight , pixelWidth, pixelHeight);
             }
+            Graphics2D vg = volatileImage.createGraphics();
+            try {
+                vg.drawImage(image, 0, 0, null);
+            } finally {
+                vg.dispose();
+            }
+            g.drawImage(volatileImage, 0, 0, WIDTH * pixelWidth, HEIGHT * pixelHeight, null);
+        } while (volatileImage.contentsLost());
+        return true;
+    }
+
+    /**
+     * Requests a repaint of the band of the panel covering the given rows.
+     * Nothing is repainted if no rows changed.
+     *
+     * @param dirtyRows bitmask of changed rows as returned by
+     * {@link Chip8#takeDirtyRows()}
+     */
+    public void repaintRows(int dirtyRows) {
+        if (dirtyRows == 0) {
+            return;
         }
+        int pixelHeight = super.getHeight() / HEIGHT;
+        int firstRow = Integer.numberOfTrailingZeros(dirtyRows);
+        int lastRow = 31 - Integer.numberOfLeadingZeros(dirtyRows);
+        repaint(0, firstRow * pixelHeight, super.getWidth(), (lastRow - firstRow + 1) * pixelHeight);
     }
 
+    /**
+     * Turns scaling through a VolatileImage on or off.
+     *
+     * @param accelerated true to blit through a VolatileImage when possible
+     */
+    public void setAccelerated(boolean accelerated) {
+        this.accelerated = accelerated;
+        if (!accelerated && volatileImage != null) {
+            volatileImage.flush();
+            volatileImage = null;
+        }
+        repaint();
+    }
+
+    /**
+     * Publishes the display of the machine as the newest frame and repaints
+     * the rows changed since the last frame. Called by the thread running the
+     * machine.
+     *
+     * @param chip8 the machine to show
+     */
+    public void publish(Chip8 chip8) {
+        copyDisplay(chip8);
+        repaintRows(chip8.takeDirtyRows());
+    }
+
+    /**
+     * Publishes the display of the machine as the newest frame and repaints
+     * the whole panel.
+     *
+     * @param chip8 the machine to show
+     */
     public void setChip8(Chip8 chip8) {
-        this.chip8 = chip8;
+        copyDisplay(chip8);
+        repaint();
     }
-    
-    
-    
-    
+
+    private void copyDisplay(Chip8 chip8) {
+        long[] rows = frames.back();
+        for (int y = 0; y < HEIGHT; y++) {
+            rows[y] = chip8.getDisplayRow(y);
+        }
+        frames.publish();
+    }
+
 }
@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.logging.Level;
@@ -33,23 +32,36 @@ public final class Chip8Utils {
         return createFromRom(rom.toPath());
     }
 
+    /**
+     * Reads a ROM into a new machine. Machines for the same ROM are started
+     * faster through a {@link RomCache}.
+     *
+     * @param rom the ROM file
+     * @return a new machine with the ROM loaded
+     * @throws IOException if the file can not be read or does not fit in
+     * memory
+     */
     public static Chip8 createFromRom(Path rom) throws IOException {
+        return RomImage.read(rom).newMachine();
+    }
 
-        byte[] reader = Files.readAllBytes(rom);
-        int index = 0x200;
-        byte[] memory = new byte[4096];//4k memory
-        try {
-            for (byte read : reader) {
-                memory[index] = (byte) (read);
-                index += 1;
+    /**
+     * Hashes the display of a Chip8 with 64 bit FNV-1a, so that frames can be
+     * compared without keeping them around.
+     *
+     * @param chip8 the machine
+     * @return the hash of the current display
+     */
+    public static long hashDisplay(Chip8 chip8) {
+        long hash = 0xcbf29ce484222325L;
+        for (int y = 0; y < 32; y++) {
+            long row = chip8.getDisplayRow(y);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                hash ^= (row >>> shift) & 0xFF;
+                hash *= 0x100000001b3L;
             }
-        } catch (ArrayIndexOutOfBoundsException ignore) {
-            throw new IOException("File is too big to fit in memory", ignore);
         }
-
-        Chip8 chip8 = new Chip8(memory);
-        return chip8;
-
+        return hash;
     }
 
     /**
@@ -0,0 +1,279 @@
+package com.cabrales.console.chip8.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Throughput and frame timing of a running emulator, published as an MXBean
+ * so it can be watched with JConsole, VisualVM or any other JMX client.
+ *
+ * The run loops only add to counters and record frame times, which costs a
+ * LongAdder increment or an uncontended atomic increment and never allocates
+ * or locks. Counters can be updated from many threads at once, as the jobs of
+ * a {@link com.cabrales.console.chip8.Chip8Farm} do. Rates and percentiles
+ * are worked out when they are read.
+ *
+ * Frame times are how long the work of each frame scheduled by a
+ * {@link FrameScheduler} took, from its start to its end. How far the starts
+ * of consecutive frames are from 1/60 of a second apart is recorded as the
+ * frame jitter. The timers tick once per scheduled frame, so the timer drift
+ * is the wall clock time since the first frame less 1/60 of a second per
+ * frame.
+ */
+public final class EmulatorMetrics implements EmulatorMetricsMXBean {
+
+    public static final String DOMAIN = "com.cabrales.console.chip8";
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final LongAdder instructions = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder audioUnderruns = new LongAdder();
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final LatencyHistogram frameJitter = new LatencyHistogram();
+
+    // Frames from the scheduler, for jitter and timer drift
+    private final AtomicLong firstFrame = new AtomicLong();
+    private final LongAdder scheduledFrames = new LongAdder();
+    private volatile long lastFrame;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private volatile long windowInstructions = 0;
+    private volatile long windowFrames = 0;
+    private volatile double instructionsPerSecond = 0;
+    private volatile double framesPerSecond = 0;
+
+    private ObjectName name;
+
+    /**
+     * @param count instructions executed
+     */
+    public void addInstructions(long count) {
+        instructions.add(count);
+        sample();
+    }
+
+    /**
+     * Counts frames which were not scheduled in real time, as in a headless
+     * run.
+     *
+     * @param count frames completed
+     */
+    public void addFrames(long count) {
+        frames.add(count);
+    }
+
+    /**
+     * Counts a frame run by a scheduler, records how long its work took and
+     * how far its start was from 1/60 of a second after the previous one.
+     *
+     * @param startNanos {@link System#nanoTime()} at the start of the frame
+     * @param endNanos {@link System#nanoTime()} when the work of the frame
+     * was done
+     */
+    public void frame(long startNanos, long endNanos) {
+        frameTimes.record(endNanos - startNanos);
+        long previous = lastFrame;
+        lastFrame = startNanos;
+        if (!firstFrame.compareAndSet(0, startNanos)) {
+            frameJitter.record(Math.abs(startNanos - previous - FrameScheduler.FRAME_NANOS));
+        }
+        frames.increment();
+        scheduledFrames.increment();
+        sample();
+    }
+
+    /**
+     * @param count frames skipped to catch up with the wall clock
+     */
+    public void addDroppedFrames(long count) {
+        droppedFrames.add(count);
+    }
+
+    /**
+     * Counts a time the audio line ran out of samples.
+     */
+    public void audioUnderrun() {
+        audioUnderruns.increment();
+    }
+
+    @Override
+    public long getInstructions() {
+        return instructions.sum();
+    }
+
+    @Override
+    public long getFrames() {
+        return frames.sum();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    @Override
+    public long getAudioUnderruns() {
+        return audioUnderruns.sum();
+    }
+
+    @Override
+    public double getInstructionsPerSecond() {
+        sample();
+        return instructionsPerSecond;
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        sample();
+        return framesPerSecond;
+    }
+
+    @Override
+    public double getFrameTimeMillis50() {
+        return frameTimeMillis(50);
+    }
+
+    @Override
+    public double getFrameTimeMillis90() {
+        return frameTimeMillis(90);
+    }
+
+    @Override
+    public double getFrameTimeMillis99() {
+        return frameTimeMillis(99);
+    }
+
+    @Override
+    public double getFrameTimeMillis999() {
+        return frameTimeMillis(99.9);
+    }
+
+    @Override
+    public double getFrameTimeMillisMax() {
+        return frameTimeMillis(100);
+    }
+
+    @Override
+    public double getFrameJitterMillis99() {
+        return frameJitter.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getFrameJitterMillisMax() {
+        return frameJitter.getValueAtPercentile(100) / 1e6;
+    }
+
+    /**
+     * @return the recorded frame times
+     */
+    public LatencyHistogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    /**
+     * @return the recorded distances of frame starts from the 60 hertz
+     * schedule
+     */
+    public LatencyHistogram getFrameJitter() {
+        return frameJitter;
+    }
+
+    @Override
+    public double getTimerDriftMillis() {
+        long first = firstFrame.get();
+        if (first == 0) {
+            return 0;
+        }
+        long expected = (scheduledFrames.sum() - 1) * FrameScheduler.FRAME_NANOS;
+        return (lastFrame - first - expected) / 1e6;
+    }
+
+    @Override
+    public long getGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    @Override
+    public long getGcTimeMillis() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    @Override
+    public void reset() {
+        instructions.reset();
+        frames.reset();
+        droppedFrames.reset();
+        audioUnderruns.reset();
+        frameTimes.reset();
+        frameJitter.reset();
+        scheduledFrames.reset();
+        firstFrame.set(0);
+        windowStart.set(System.nanoTime());
+        windowInstructions = 0;
+        windowFrames = 0;
+        instructionsPerSecond = 0;
+        framesPerSecond = 0;
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server as
+     * com.cabrales.console.chip8:type=Emulator,name=<i>name</i>.
+     *
+     * @param name tells this emulator apart from others in the same JVM
+     * @throws JMException if the name is taken or not a valid property value
+     */
+    public synchronized void register(String name) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=Emulator,name=" + name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.name = objectName;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if registered.
+     *
+     * @throws JMException if the MBean server refuses
+     */
+    public synchronized void unregister() throws JMException {
+        if (name != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            name = null;
+        }
+    }
+
+    private double frameTimeMillis(double percentile) {
+        return frameTimes.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    // Works out the rates once a second, by whichever thread gets there first
+    private void sample() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start >= RATE_WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            long instructionCount = instructions.sum();
+            long frameCount = frames.sum();
+            instructionsPerSecond = (instructionCount - windowInstructions) * 1e9 / (now - start);
+            framesPerSecond = (frameCount - windowFrames) * 1e9 / (now - start);
+            windowInstructions = instructionCount;
+            windowFrames = frameCount;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.cabrales.console.chip8.util;
+
+/**
+ * The attributes of {@link EmulatorMetrics} as published over JMX.
+ */
+public interface EmulatorMetricsMXBean {
+
+    long getInstructions();
+
+    long getFrames();
+
+    long getDroppedFrames();
+
+    long getAudioUnderruns();
+
+    /**
+     * @return instructions per second over the last second
+     */
+    double getInstructionsPerSecond();
+
+    /**
+     * @return frames per second over the last second
+     */
+    double getFramesPerSecond();
+
+    double getFrameTimeMillis50();
+
+    double getFrameTimeMillis90();
+
+    double getFrameTimeMillis99();
+
+    double getFrameTimeMillis999();
+
+    double getFrameTimeMillisMax();
+
+    /**
+     * @return 99th percentile of how far frames started from the 60 hertz
+     * schedule
+     */
+    double getFrameJitterMillis99();
+
+    double getFrameJitterMillisMax();
+
+    /**
+     * @return how far the 60 hertz timers have fallen behind the wall clock
+     */
+    double getTimerDriftMillis();
+
+    /**
+     * @return collections by all garbage collectors of the JVM
+     */
+    long getGcCount();
+
+    /**
+     * @return time spent in all garbage collectors of the JVM
+     */
+    long getGcTimeMillis();
+
+    /**
+     * Starts every counter and the frame times over.
+     */
+    void reset();
+
+}
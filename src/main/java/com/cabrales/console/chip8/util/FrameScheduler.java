@@ -0,0 +1,109 @@
+package com.cabrales.console.chip8.util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs an emulator at a fixed 60 frames per second.
+ *
+ * Every frame the task is handed the configured number of instructions to
+ * execute, so the CPU speed is instructions per frame * 60 hertz. Between
+ * frames the thread parks until the next frame is due. Deadlines are counted
+ * from the start time rather than from the end of the previous frame, so
+ * oversleeping in one frame is made up in the next instead of adding up. If
+ * the task falls more than a few frames behind, the missed frames are dropped
+ * and the schedule restarts from the current time.
+ */
+public final class FrameScheduler implements Runnable {
+
+    public static final int FRAMES_PER_SECOND = 60;
+    public static final long FRAME_NANOS = 1_000_000_000L / FRAMES_PER_SECOND;
+    private static final int MAX_LAG_FRAMES = 5;
+
+    /**
+     * Work done once per frame.
+     */
+    @FunctionalInterface
+    public interface FrameTask {
+
+        /**
+         * @param instructions the number of instructions to execute this frame
+         */
+        void frame(int instructions);
+    }
+
+    private final FrameTask task;
+    private volatile int instructionsPerFrame;
+    private volatile boolean stopped = false;
+    private long droppedFrames = 0;
+    private volatile EmulatorMetrics metrics;
+
+    /**
+     * @param instructionsPerFrame instructions to execute each frame
+     * @param task the work done each frame
+     */
+    public FrameScheduler(int instructionsPerFrame, FrameTask task) {
+        setInstructionsPerFrame(instructionsPerFrame);
+        this.task = task;
+    }
+
+    @Override
+    public void run() {
+        long deadline = System.nanoTime();
+        while (!stopped) {
+            EmulatorMetrics frameMetrics = metrics;
+            long start = System.nanoTime();
+            task.frame(instructionsPerFrame);
+            long now = System.nanoTime();
+            if (frameMetrics != null) {
+                frameMetrics.frame(start, now);
+            }
+
+            deadline += FRAME_NANOS;
+            if (now - deadline > MAX_LAG_FRAMES * FRAME_NANOS) {
+                long dropped = (now - deadline) / FRAME_NANOS;
+                droppedFrames += dropped;
+                if (frameMetrics != null) {
+                    frameMetrics.addDroppedFrames(dropped);
+                }
+                deadline = now;
+            }
+            while (!stopped && (now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+        }
+    }
+
+    /**
+     * Stops the scheduler after the current frame.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public int getInstructionsPerFrame() {
+        return instructionsPerFrame;
+    }
+
+    public void setInstructionsPerFrame(int instructionsPerFrame) {
+        if (instructionsPerFrame < 1) {
+            throw new IllegalArgumentException("Instructions per frame must be at least 1");
+        }
+        this.instructionsPerFrame = instructionsPerFrame;
+    }
+
+    /**
+     * @param metrics where frame times and dropped frames are recorded, or
+     * null for nowhere
+     */
+    public void setMetrics(EmulatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the number of frames skipped to catch up after falling behind
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+}
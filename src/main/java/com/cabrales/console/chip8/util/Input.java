@@ -1,74 +1,108 @@
 package com.cabrales.console.chip8.util;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import java.util.Arrays;
+
+/**
+ * The keyboard of the Swing window, shared by every Chip8 which has not been
+ * given a keypad of its own.
+ *
+ * Characters are looked up in a table covering every char, holding the key
+ * they are mapped to or -1, so handling a key event allocates nothing and
+ * takes no locks.
+ */
 public final class Input {
 
-    private final static Map<String, Integer> keyMap = new HashMap<>();
+    private static final byte[] keyMap = new byte[Character.MAX_VALUE + 1];
 
     static {
-        keyMap.put("0", 0x0);
-        keyMap.put("1", 0x1);
-        keyMap.put("2", 0x2);
-        keyMap.put("3", 0x3);
-        keyMap.put("4", 0x4);
-        keyMap.put("5", 0x5);
-        keyMap.put("6", 0x6);
-        keyMap.put("7", 0x7);
-        keyMap.put("8", 0x8);
-        keyMap.put("9", 0x9);
-        keyMap.put("a", 0xa);
-        keyMap.put("b", 0xb);
-        keyMap.put("c", 0xc);
-        keyMap.put("d", 0xd);
-        keyMap.put("e", 0xe);
-        keyMap.put("f", 0xf);
-
+        Arrays.fill(keyMap, (byte) -1);
+        for (int i = 0; i < 0x10; i++) {
+            map(i, Character.forDigit(i, 16));
+        }
     }
 
+    /**
+     * Maps the first character of the text, in either case, to a key. Other
+     * characters mapped to the key stay mapped.
+     *
+     * @param i the key, 0x0 - 0xF
+     * @param text the character to map, ignored if null or empty
+     */
     public static void map(int i, String text) {
         if (text != null && !text.isEmpty()) {
-            keyMap.put(text.toLowerCase(), i);
+            map(i, text.charAt(0));
         }
     }
 
+    private static void map(int i, char c) {
+        keyMap[Character.toLowerCase(c)] = (byte) (i & 0xF);
+        keyMap[Character.toUpperCase(c)] = (byte) (i & 0xF);
+    }
+
     private Input() {
     }
 
-    private static int KEYS = -1;
+    private static final AtomicKeypad KEYS = new AtomicKeypad();
+
+    /**
+     * @return the keypad driven by the keyboard
+     */
+    public static Keypad getKeypad() {
+        return KEYS;
+    }
 
     public static void press(int i) {
-        KEYS = 0x0000000F & i;
+        KEYS.press(i);
+    }
+
+    /**
+     * Presses the key mapped to a typed character, if any.
+     *
+     * @param c the character, as given by KeyEvent.getKeyChar()
+     */
+    public static void press(char c) {
+        int key = keyMap[c];
+        if (key >= 0) {
+            KEYS.press(key);
+        }
     }
 
     public static void press(String input) {
-        input = input.toLowerCase();
-        if (keyMap.containsKey(input)) {
-            KEYS = 0x0000000F & keyMap.get(input);
+        if (input.length() == 1) {
+            press(input.charAt(0));
         }
+    }
 
+    /**
+     * Releases the key mapped to a typed character, if any.
+     *
+     * @param c the character, as given by KeyEvent.getKeyChar()
+     */
+    public static void unpress(char c) {
+        int key = keyMap[c];
+        if (key >= 0) {
+            KEYS.release(key);
+        }
     }
 
     public static void unpress(String input) {
-        input = input.toLowerCase();
-
-        if (keyMap.containsKey(input)) {
-            KEYS = -1;
+        if (input.length() == 1) {
+            unpress(input.charAt(0));
         }
     }
 
     public static void unpress() {
-        KEYS = -1;
+        KEYS.releaseAll();
     }
 
     /**
-     * returns the currently pressed keys
+     * returns the lowest of the currently pressed keys
      *
-     * @return the int value of the key pressed
+     * @return the int value of the key pressed, or -1 if no key is pressed
      */
     public static int read() {
-        return KEYS;
+        int keys = KEYS.getKeys();
+        return keys == 0 ? -1 : Integer.numberOfTrailingZeros(keys);
     }
 
 }
@@ -0,0 +1,127 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Keypad input scripted against the cycle count, for running ROMs without a
+ * keyboard.
+ *
+ * Every line of a script holds a cycle and a key, separated by whitespace.
+ * The key is a hex digit 0 - F to press that key before the cycle executes,
+ * the digit after a - to release that key, or - alone to release every key.
+ * A key stays pressed until it is released, so several keys can be held at
+ * the same time. Blank lines and lines starting with # are ignored. Cycles
+ * must not go backwards.
+ *
+ * <pre>
+ * # hold 5 for two frames at 600 hertz and press 6 along with it
+ * 1200 5
+ * 1210 6
+ * 1220 -5
+ * 1230 -
+ * </pre>
+ */
+public final class InputScript {
+
+    public static final InputScript EMPTY = new InputScript(new long[0], new int[0], new int[0], 0);
+
+    private static final int ALL_KEYS = 0xFFFF;
+
+    private final long[] cycles;
+    private final int[] pressed;
+    private final int[] released;
+    private final int size;
+
+    private InputScript(long[] cycles, int[] pressed, int[] released, int size) {
+        this.cycles = cycles;
+        this.pressed = pressed;
+        this.released = released;
+        this.size = size;
+    }
+
+    public static InputScript parse(Path script) throws IOException {
+        long[] cycles = new long[16];
+        int[] pressed = new int[16];
+        int[] released = new int[16];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 2) {
+                    throw new IOException(script + ":" + lineNumber + ": expected a cycle and a key");
+                }
+                long cycle;
+                try {
+                    cycle = Long.parseLong(parts[0]);
+                } catch (NumberFormatException ex) {
+                    throw new IOException(script + ":" + lineNumber + ": " + ex.getMessage(), ex);
+                }
+                boolean release = parts[1].startsWith("-");
+                int keys = "-".equals(parts[1]) ? ALL_KEYS : parseKey(release ? parts[1].substring(1) : parts[1]);
+                if (keys == 0 || cycle < 0 || (size > 0 && cycle < cycles[size - 1])) {
+                    throw new IOException(script + ":" + lineNumber + ": invalid cycle or key");
+                }
+                if (size == cycles.length) {
+                    cycles = Arrays.copyOf(cycles, size * 2);
+                    pressed = Arrays.copyOf(pressed, size * 2);
+                    released = Arrays.copyOf(released, size * 2);
+                }
+                cycles[size] = cycle;
+                pressed[size] = release ? 0 : keys;
+                released[size] = release ? keys : 0;
+                size++;
+            }
+        }
+        return new InputScript(cycles, pressed, released, size);
+    }
+
+    // Returns the bit of a single hex digit key, or 0 if it is not one
+    private static int parseKey(String key) {
+        int digit = key.length() == 1 ? Character.digit(key.charAt(0), 16) : -1;
+        return digit < 0 ? 0 : 1 << digit;
+    }
+
+    /**
+     * @return the number of events in the script
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param event index of the event
+     * @return the cycle before which the event happens
+     */
+    public long getCycle(int event) {
+        return cycles[event];
+    }
+
+    /**
+     * @param event index of the event
+     * @return the keys pressed by the event, one bit per key
+     */
+    public int getPressed(int event) {
+        return pressed[event];
+    }
+
+    /**
+     * @param event index of the event
+     * @return the keys released by the event, one bit per key
+     */
+    public int getReleased(int event) {
+        return released[event];
+    }
+
+}
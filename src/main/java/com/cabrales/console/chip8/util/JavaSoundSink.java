@@ -0,0 +1,175 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays the tone in real time through a Java Sound line.
+ *
+ * The emulation thread only hands tick events to a feeder thread through a
+ * lock free single producer, single consumer ring, so it never waits for the
+ * audio line. The feeder copies one tick of tone at a time out of
+ * {@link Tone} and writes it in pieces no larger than the line can take
+ * without blocking. A sink is fed by one machine at a time.
+ *
+ * The line is opened by the feeder the first time a tick is played. Without
+ * one, for instance on a server with no sound hardware, the sound is
+ * discarded.
+ */
+public final class JavaSoundSink implements AudioSink, Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(JavaSoundSink.class.getName());
+
+    private static final AudioFormat AF = new AudioFormat((float) Tone.SAMPLE_RATE, 8, 1, true, false);
+    // Enough for a few late frames without adding much latency
+    private static final int LINE_BUFFER = 6 * Tone.SAMPLES_PER_TICK;
+
+    private static final byte PLAY = 1;
+    private static final byte STOP = 0;
+    // About a second of ticks, events are dropped when the feeder is that far behind
+    private static final int RING_SIZE = 64;
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile Thread feeder;
+    private volatile boolean waiting = false;
+    private volatile boolean disabled = false;
+    private volatile boolean closed = false;
+    private volatile EmulatorMetrics metrics;
+
+    // Only touched by the producer
+    private byte lastEvent = STOP;
+
+    /**
+     * Plays one tick of tone. Called from the thread running the machine.
+     */
+    @Override
+    public void play() {
+        if (!disabled) {
+            offer(PLAY);
+        }
+    }
+
+    /**
+     * Ends the tone once the ticks already played have been heard.
+     */
+    @Override
+    public void stop() {
+        if (lastEvent == PLAY) {
+            offer(STOP);
+        }
+    }
+
+    /**
+     * @param metrics where audio underruns are counted, or null for nowhere
+     */
+    public void setMetrics(EmulatorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Stops the feeder and closes the line. Ticks played afterwards are
+     * discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        disabled = true;
+        Thread thread = feeder;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void offer(byte event) {
+        if (feeder == null) {
+            startFeeder();
+        }
+        long t = tail.get();
+        if (t - head.get() == RING_SIZE) {
+            return;
+        }
+        ring[(int) (t % RING_SIZE)] = event;
+        tail.set(t + 1);
+        lastEvent = event;
+        if (waiting) {
+            LockSupport.unpark(feeder);
+        }
+    }
+
+    private synchronized void startFeeder() {
+        if (feeder == null) {
+            Thread thread = new Thread(this::feed, "chip8-audio");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            feeder = thread;
+            thread.start();
+        }
+    }
+
+    private void feed() {
+        SourceDataLine line;
+        try {
+            line = AudioSystem.getSourceDataLine(AF);
+            line.open(AF, LINE_BUFFER);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException ex) {
+            LOGGER.log(Level.WARNING, "No audio line, the sound is turned off", ex);
+            disabled = true;
+            return;
+        }
+
+        byte[] tick = new byte[Tone.SAMPLES_PER_TICK];
+        int phase = 0;
+        boolean playing = false;
+        while (!closed) {
+            long h = head.get();
+            if (h == tail.get()) {
+                waiting = true;
+                if (h == tail.get() && !closed) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                continue;
+            }
+            byte event = ring[(int) (h % RING_SIZE)];
+            head.set(h + 1);
+
+            if (event == STOP) {
+                playing = false;
+                continue;
+            }
+            EmulatorMetrics underruns = metrics;
+            if (playing && underruns != null && line.available() >= line.getBufferSize()) {
+                underruns.audioUnderrun();
+            }
+            phase = Tone.fill(tick, phase);
+            write(line, tick);
+            playing = true;
+        }
+        line.close();
+    }
+
+    // Writes no more than the line has room for, so the writes never block
+    private void write(SourceDataLine line, byte[] samples) {
+        int offset = 0;
+        while (offset < samples.length && !closed) {
+            int length = Math.min(samples.length - offset, line.available());
+            if (length == 0) {
+                LockSupport.parkNanos(this, 1_000_000L);
+                continue;
+            }
+            offset += line.write(samples, offset, length);
+        }
+    }
+
+}
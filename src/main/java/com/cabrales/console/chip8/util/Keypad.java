@@ -0,0 +1,17 @@
+package com.cabrales.console.chip8.util;
+
+/**
+ * The hex keypad a Chip8 reads its input from.
+ */
+@FunctionalInterface
+public interface Keypad {
+
+    /**
+     * returns the currently pressed keys
+     *
+     * @return bitmask of the keys held down, bit n is set while key n is
+     * pressed
+     */
+    int getKeys();
+
+}
@@ -0,0 +1,140 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import com.cabrales.console.chip8.Chip8;
+
+/**
+ * Replays a movie written by {@link MovieRecorder}.
+ *
+ * Opening the movie restores the machine to the state the recording started
+ * from. Used as the keypad of that machine, the player then returns the keys
+ * recorded for every cycle, so running it again goes through exactly the same
+ * states. The movie is read through a small buffer as the machine reaches
+ * each change, after the last one the keys stay as they were.
+ */
+public final class MoviePlayer implements Keypad, Closeable {
+
+    private final Chip8 chip8;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+    private int keys = 0;
+    private long nextCycle;
+    private int nextKeys;
+    private boolean finished = false;
+
+    /**
+     * @param movie the movie to play
+     * @param chip8 the machine to replay it on, restored to the start of the
+     * movie
+     * @throws IOException if the file can not be read or is not a movie for
+     * this machine
+     */
+    public MoviePlayer(Path movie, Chip8 chip8) throws IOException {
+        this.chip8 = chip8;
+        this.channel = FileChannel.open(movie, StandardOpenOption.READ);
+        buffer.limit(0);
+        try {
+            fill();
+            if (buffer.remaining() < 12 || buffer.getInt() != MovieRecorder.MAGIC) {
+                throw new IOException(movie + " is not a Chip8 movie");
+            }
+            int version = buffer.getInt();
+            if (version != MovieRecorder.VERSION) {
+                throw new IOException(movie + " has unsupported version " + version);
+            }
+            int snapshotSize = buffer.getInt();
+            ByteBuffer snapshot = ByteBuffer.allocate(snapshotSize);
+            while (snapshot.hasRemaining()) {
+                if (!buffer.hasRemaining()) {
+                    fill();
+                    if (!buffer.hasRemaining()) {
+                        throw new IOException(movie + " is truncated");
+                    }
+                }
+                int length = Math.min(buffer.remaining(), snapshot.remaining());
+                ByteBuffer slice = buffer.duplicate();
+                slice.limit(slice.position() + length);
+                snapshot.put(slice);
+                buffer.position(buffer.position() + length);
+            }
+            snapshot.flip();
+            try {
+                chip8.restoreState(snapshot);
+            } catch (IllegalArgumentException ex) {
+                throw new IOException(movie + ": " + ex.getMessage(), ex);
+            }
+            this.nextCycle = chip8.getCycleCount();
+            readRecord();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getKeys() {
+        long cycle = chip8.getCycleCount();
+        while (!finished && nextCycle <= cycle) {
+            keys = nextKeys;
+            try {
+                readRecord();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return true once every recorded change has been played
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readRecord() throws IOException {
+        if (buffer.remaining() < MovieRecorder.MAX_RECORD_SIZE) {
+            fill();
+        }
+        if (!buffer.hasRemaining()) {
+            finished = true;
+            return;
+        }
+        long delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (!buffer.hasRemaining() || shift > 63) {
+                throw new IOException("Movie record is truncated");
+            }
+            b = buffer.get();
+            delta |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (buffer.remaining() < 2) {
+            throw new IOException("Movie record is truncated");
+        }
+        nextKeys = buffer.getShort() & 0xFFFF;
+        nextCycle += delta;
+    }
+
+    // Moves what is left to the front of the buffer and reads more after it
+    private void fill() throws IOException {
+        buffer.compact();
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+        }
+        buffer.flip();
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import com.cabrales.console.chip8.Chip8;
+
+/**
+ * Records the keys a Chip8 reads, so the run can be replayed exactly with a
+ * {@link MoviePlayer}.
+ *
+ * The recorder sits between the machine and its real keypad. A movie starts
+ * with a snapshot of the machine, which includes the state of its random
+ * number generator, followed by one record for every change of the keys seen
+ * by the machine: the number of cycles since the previous change as a
+ * variable length number and the new key mask in two bytes. Records are
+ * collected in a buffer and appended to the file when it fills up, reading
+ * keys which did not change only costs a comparison.
+ *
+ * <pre>
+ * MovieRecorder recorder = new MovieRecorder(path, chip8, Input.getKeypad());
+ * chip8.setKeypad(recorder);
+ * </pre>
+ */
+public final class MovieRecorder implements Keypad, Closeable {
+
+    // "C8MV"
+    static final int MAGIC = 0x43384D56;
+    static final int VERSION = 1;
+    // A cycle delta takes at most ten bytes and the mask two
+    static final int MAX_RECORD_SIZE = 12;
+
+    private final Chip8 chip8;
+    private final Keypad keypad;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(8192);
+    private int keys = 0;
+    private long lastCycle;
+    private IOException failure;
+    private boolean closed = false;
+
+    /**
+     * Starts a movie with the current state of the machine.
+     *
+     * @param movie the file to write, replaced if it exists
+     * @param chip8 the machine being recorded
+     * @param keypad the keypad the keys are read from
+     * @throws IOException if the file can not be written
+     */
+    public MovieRecorder(Path movie, Chip8 chip8, Keypad keypad) throws IOException {
+        this.chip8 = chip8;
+        this.keypad = keypad;
+        this.lastCycle = chip8.getCycleCount();
+        this.channel = FileChannel.open(movie, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(12 + chip8.getSnapshotSize());
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(chip8.getSnapshotSize());
+            chip8.saveState(header);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getKeys() {
+        int current = keypad.getKeys();
+        if (current != keys) {
+            record(current);
+        }
+        return current;
+    }
+
+    private synchronized void record(int current) {
+        keys = current;
+        if (closed || failure != null) {
+            return;
+        }
+        long cycle = chip8.getCycleCount();
+        long delta = cycle - lastCycle;
+        lastCycle = cycle;
+        try {
+            if (buffer.remaining() < MAX_RECORD_SIZE) {
+                flush();
+            }
+            while ((delta & ~0x7FL) != 0) {
+                buffer.put((byte) (delta & 0x7F | 0x80));
+                delta >>>= 7;
+            }
+            buffer.put((byte) delta);
+            buffer.putShort((short) current);
+        } catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes what is left in the buffer and closes the file. Keys are still
+     * passed through afterwards, but no longer recorded.
+     *
+     * @throws IOException if writing the movie failed at any point
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null) {
+                flush();
+            }
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.cabrales.console.chip8.util;
+
+/**
+ * The random numbers used by the CXNN instruction.
+ *
+ * The whole state of a source is one long, so that it can be saved with the
+ * rest of the machine and restored later.
+ */
+public interface RandomSource {
+
+    /**
+     * @return a random number from 0 to 255
+     */
+    int nextByte();
+
+    /**
+     * @return the current state
+     */
+    long getState();
+
+    /**
+     * @param state a state returned by {@link #getState()}
+     */
+    void setState(long state);
+
+}
@@ -0,0 +1,224 @@
+package com.cabrales.console.chip8.util;
+
+import java.nio.ByteBuffer;
+import com.cabrales.console.chip8.Chip8;
+
+/**
+ * Keeps the most recent frames of a Chip8 so the machine can be stepped
+ * backwards.
+ *
+ * Every captured frame is a snapshot from {@link Chip8#saveState()}. Once a
+ * second, or whenever the difference has grown too large, a full keyframe is
+ * stored. Frames in between only store the XOR of their snapshot with the
+ * last keyframe, with the runs of zero bytes, which are most of it, left out.
+ *
+ * Everything lives in one byte array allocated up front, used as a ring. When
+ * it is full the oldest keyframe is dropped together with the frames stored
+ * against it, so memory stays bounded however long the machine runs.
+ */
+public final class RewindBuffer {
+
+    public static final int KEYFRAME_INTERVAL = 60;
+    // A run of fewer zeros costs more to skip than to store
+    private static final int MIN_ZERO_RUN = 4;
+
+    private final byte[] arena;
+    private final int[] offsets;
+    private final int[] lengths;
+    private final boolean[] keyframes;
+    private int oldest = 0;
+    private int count = 0;
+    private int head = 0;
+    private int sinceKeyframe = 0;
+
+    private byte[] keyframe;
+    private byte[] scratch;
+    private byte[] encoded;
+
+    /**
+     * @param maxFrames the number of frames kept at most
+     * @param maxBytes the size of the storage for frames
+     */
+    public RewindBuffer(int maxFrames, int maxBytes) {
+        if (maxFrames < 2) {
+            throw new IllegalArgumentException("At least two frames have to be kept");
+        }
+        this.arena = new byte[maxBytes];
+        this.offsets = new int[maxFrames];
+        this.lengths = new int[maxFrames];
+        this.keyframes = new boolean[maxFrames];
+    }
+
+    /**
+     * Stores the current state of the machine as the newest frame.
+     *
+     * @param chip8 the machine to capture
+     */
+    public void capture(Chip8 chip8) {
+        int size = chip8.getSnapshotSize();
+        if (keyframe == null || keyframe.length != size) {
+            if (2 * (size + 4) > arena.length) {
+                throw new IllegalStateException("Rewind buffer is too small for a " + size + " byte snapshot");
+            }
+            clear();
+            keyframe = new byte[size];
+            scratch = new byte[size];
+            encoded = new byte[size + 4 * (size / MIN_ZERO_RUN + 1)];
+        }
+        chip8.saveState(ByteBuffer.wrap(scratch));
+
+        int length = 0;
+        boolean key = count == 0 || sinceKeyframe >= KEYFRAME_INTERVAL;
+        if (!key) {
+            length = encode();
+            key = length > size / 2;
+        }
+        if (!key && store(encoded, length, false)) {
+            sinceKeyframe++;
+        } else {
+            System.arraycopy(scratch, 0, keyframe, 0, size);
+            store(scratch, size, true);
+            sinceKeyframe = 1;
+        }
+    }
+
+    /**
+     * Drops the newest frame and restores the machine to the frame before it.
+     *
+     * @param chip8 the machine to restore
+     * @return false if there is no earlier frame, the machine is left alone
+     */
+    public boolean stepBack(Chip8 chip8) {
+        if (count < 2) {
+            return false;
+        }
+        count--;
+        head = offsets[index(count - 1)] + lengths[index(count - 1)];
+
+        int newest = count - 1;
+        int key = newest;
+        while (!keyframes[index(key)]) {
+            key--;
+        }
+        int keyIndex = index(key);
+        System.arraycopy(arena, offsets[keyIndex], keyframe, 0, keyframe.length);
+        System.arraycopy(keyframe, 0, scratch, 0, keyframe.length);
+        if (key != newest) {
+            decode(index(newest));
+        }
+        sinceKeyframe = newest - key + 1;
+        chip8.restoreState(scratch);
+        return true;
+    }
+
+    /**
+     * Drops every frame.
+     */
+    public void clear() {
+        oldest = 0;
+        count = 0;
+        head = 0;
+        sinceKeyframe = 0;
+    }
+
+    /**
+     * @return the number of frames which can be stepped back
+     */
+    public int size() {
+        return Math.max(0, count - 1);
+    }
+
+    private int index(int frame) {
+        return (oldest + frame) % offsets.length;
+    }
+
+    /*
+     * Returns false without storing anything if a frame stored against a
+     * keyframe would need the space of that keyframe.
+     */
+    private boolean store(byte[] data, int length, boolean key) {
+        if (head + length > arena.length) {
+            head = 0;
+        }
+        while (count > 0 && (count == offsets.length || overlaps(oldest, head, length))) {
+            dropOldest();
+        }
+        if (!key && count == 0) {
+            return false;
+        }
+        System.arraycopy(data, 0, arena, head, length);
+        int index = index(count++);
+        offsets[index] = head;
+        lengths[index] = length;
+        keyframes[index] = key;
+        head += length;
+        return true;
+    }
+
+    private boolean overlaps(int index, int offset, int length) {
+        return offsets[index] < offset + length && offset < offsets[index] + lengths[index];
+    }
+
+    // Frames stored against the dropped keyframe can not be decoded any more
+    private void dropOldest() {
+        do {
+            oldest = (oldest + 1) % offsets.length;
+            count--;
+        } while (count > 0 && !keyframes[oldest]);
+    }
+
+    /*
+     * Encodes scratch XOR keyframe into encoded as a list of (zeros, length,
+     * bytes) runs, the counts stored as two bytes each. Returns the length.
+     */
+    private int encode() {
+        int size = scratch.length;
+        int out = 0;
+        int i = 0;
+        while (i < size) {
+            int start = i;
+            while (i < size && scratch[i] == keyframe[i]) {
+                i++;
+            }
+            if (i == size) {
+                break;
+            }
+            int zeros = i - start;
+            int literal = i;
+            int run = 0;
+            while (i < size && run < MIN_ZERO_RUN) {
+                run = scratch[i] == keyframe[i] ? run + 1 : 0;
+                i++;
+            }
+            if (run == MIN_ZERO_RUN) {
+                i -= run;
+            }
+            int length = i - literal;
+            encoded[out++] = (byte) (zeros >> 8);
+            encoded[out++] = (byte) zeros;
+            encoded[out++] = (byte) (length >> 8);
+            encoded[out++] = (byte) length;
+            for (int j = literal; j < i; j++) {
+                encoded[out++] = (byte) (scratch[j] ^ keyframe[j]);
+            }
+        }
+        return out;
+    }
+
+    // Applies the runs of a stored frame to scratch, which holds its keyframe
+    private void decode(int index) {
+        int in = offsets[index];
+        int end = in + lengths[index];
+        int position = 0;
+        while (in < end) {
+            int zeros = (arena[in] & 0xFF) << 8 | arena[in + 1] & 0xFF;
+            int length = (arena[in + 2] & 0xFF) << 8 | arena[in + 3] & 0xFF;
+            in += 4;
+            position += zeros;
+            for (int j = 0; j < length; j++) {
+                scratch[position++] ^= arena[in++];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import com.cabrales.console.chip8.Chip8;
+
+/**
+ * Keeps the images of ROMs which were read, for runs which start the same
+ * ROMs over and over.
+ *
+ * Images are kept by absolute path together with the modification time and
+ * size of the file. Every lookup checks those against the file, so a ROM
+ * which changed on disk is read again. The cache is safe to use from many
+ * threads; when two threads miss on the same ROM at once both read it and
+ * the last one is kept.
+ */
+public final class RomCache {
+
+    private final ConcurrentMap<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param rom the ROM file
+     * @return the image of the ROM as it is on disk now
+     * @throws IOException if the file can not be read or does not fit in
+     * memory
+     */
+    public RomImage get(Path rom) throws IOException {
+        Path key = rom.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        Entry entry = entries.get(key);
+        if (entry == null || entry.modified != modified || entry.image.getSize() != attributes.size()) {
+            entry = new Entry(modified, RomImage.read(key));
+            entries.put(key, entry);
+        }
+        return entry.image;
+    }
+
+    /**
+     * @param rom the ROM file
+     * @return a new machine with the ROM loaded
+     * @throws IOException if the file can not be read or does not fit in
+     * memory
+     */
+    public Chip8 createFromRom(Path rom) throws IOException {
+        return get(rom).newMachine();
+    }
+
+    /**
+     * @return the number of ROMs kept
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops every image.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry {
+
+        private final long modified;
+        private final RomImage image;
+
+        private Entry(long modified, RomImage image) {
+            this.modified = modified;
+            this.image = image;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import com.cabrales.console.chip8.Chip8;
+
+/**
+ * The memory of a Chip8 with a ROM loaded, kept to start any number of
+ * machines from.
+ *
+ * An image never changes once read, so it can be shared between threads.
+ * Starting a machine costs one copy of the 4 KB image.
+ */
+public final class RomImage {
+
+    public static final int MEMORY_SIZE = 4096;
+    public static final int START = 0x200;
+    public static final int MAX_ROM_SIZE = MEMORY_SIZE - START;
+
+    private final byte[] memory;
+    private final int size;
+
+    private RomImage(byte[] memory, int size) {
+        this.memory = memory;
+        this.size = size;
+    }
+
+    /**
+     * @param rom the ROM file
+     * @return the image of the ROM
+     * @throws IOException if the file can not be read or does not fit in
+     * memory
+     */
+    public static RomImage read(Path rom) throws IOException {
+        try (FileChannel channel = FileChannel.open(rom, StandardOpenOption.READ)) {
+            int size = checkSize(channel.size());
+            byte[] memory = new byte[MEMORY_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(memory, START, size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("File ended after " + buffer.position() + " bytes of " + rom);
+                }
+            }
+            return new RomImage(memory, size);
+        }
+    }
+
+    /**
+     * Reads a ROM stored in a larger file, such as an archive of ROMs, by
+     * mapping only its part of the file into memory.
+     *
+     * @param archive the file holding the ROM
+     * @param offset where the ROM starts in the file
+     * @param size the size of the ROM
+     * @return the image of the ROM
+     * @throws IOException if the file can not be read or the ROM does not fit
+     * in memory
+     */
+    public static RomImage map(Path archive, long offset, int size) throws IOException {
+        checkSize(size);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            if (offset < 0 || offset + size > channel.size()) {
+                throw new EOFException("ROM at " + offset + " runs past the end of " + archive);
+            }
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, offset, size));
+        }
+    }
+
+    /**
+     * @param rom the remaining bytes are the ROM, the position is left alone
+     * @return the image of the ROM
+     * @throws IOException if the ROM does not fit in memory
+     */
+    public static RomImage of(ByteBuffer rom) throws IOException {
+        int size = checkSize(rom.remaining());
+        byte[] memory = new byte[MEMORY_SIZE];
+        rom.duplicate().get(memory, START, size);
+        return new RomImage(memory, size);
+    }
+
+    private static int checkSize(long size) throws IOException {
+        if (size > MAX_ROM_SIZE) {
+            throw new IOException("File is too big to fit in memory: " + size + " bytes, at most "
+                    + MAX_ROM_SIZE + " fit");
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return a new machine with its own copy of the memory
+     */
+    public Chip8 newMachine() {
+        byte[] copy = new byte[MEMORY_SIZE];
+        System.arraycopy(memory, 0, copy, 0, MEMORY_SIZE);
+        return new Chip8(copy);
+    }
+
+    /**
+     * @return the size of the ROM, without the memory below it
+     */
+    public int getSize() {
+        return size;
+    }
+
+}
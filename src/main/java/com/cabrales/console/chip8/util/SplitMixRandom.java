@@ -0,0 +1,51 @@
+package com.cabrales.console.chip8.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The SplitMix64 generator, as used by java.util.SplittableRandom.
+ *
+ * Every seed is valid, including 0, and the state is a single counter, so
+ * generating a number is an addition and a few multiplies and shifts, with
+ * no synchronization or allocation. Each instance belongs to one machine.
+ */
+public final class SplitMixRandom implements RandomSource {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Creates a source with an unpredictable seed.
+     */
+    public SplitMixRandom() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * @param seed the seed, the same seed always gives the same numbers
+     */
+    public SplitMixRandom(long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    public int nextByte() {
+        long z = state += GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        return (int) (z >>> 56);
+    }
+
+    @Override
+    public long getState() {
+        return state;
+    }
+
+    @Override
+    public void setState(long state) {
+        this.state = state;
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.cabrales.console.chip8.util;
+
+/**
+ * The 880 hertz tone of the sound timer as 8 bit signed samples at 44100
+ * hertz.
+ */
+final class Tone {
+
+    static final int SAMPLE_RATE = 44100;
+    static final int FREQUENCY = 880;
+    static final int SAMPLES_PER_TICK = SAMPLE_RATE / 60;
+    private static final int VOLUME = 20;
+
+    // 880 hertz repeats exactly 44 times in 2205 samples at 44100 hertz
+    private static final byte[] WAVE = new byte[SAMPLE_RATE / gcd(SAMPLE_RATE, FREQUENCY)];
+
+    static {
+        for (int i = 0; i < WAVE.length; i++) {
+            WAVE[i] = (byte) Math.round(Math.sin(2.0 * Math.PI * FREQUENCY * i / SAMPLE_RATE) * VOLUME);
+        }
+    }
+
+    private Tone() {
+    }
+
+    /**
+     * Copies one tick of the wave, going on from where the previous tick
+     * ended so there is no jump in phase.
+     *
+     * @param tick receives {@link #SAMPLES_PER_TICK} samples
+     * @param phase the position in the wave to start at
+     * @return the position in the wave to start the next tick at
+     */
+    static int fill(byte[] tick, int phase) {
+        for (int filled = 0; filled < tick.length;) {
+            int length = Math.min(tick.length - filled, WAVE.length - phase);
+            System.arraycopy(WAVE, phase, tick, filled, length);
+            filled += length;
+            phase = (phase + length) % WAVE.length;
+        }
+        return phase;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+}
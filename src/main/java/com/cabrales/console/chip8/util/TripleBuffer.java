@@ -0,0 +1,59 @@
+package com.cabrales.console.chip8.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands complete frames from one writing thread to one reading thread
+ * without locks.
+ *
+ * There are three buffers. The writer fills the back buffer and publishes it
+ * by swapping it with the middle one, the reader takes the newest frame by
+ * swapping its front buffer with the middle one. Each swap is a single
+ * getAndSet, so neither side ever waits for the other, and a frame is never
+ * seen half written. Frames published faster than they are read are skipped.
+ */
+public final class TripleBuffer {
+
+    // Set in the middle index while it holds a frame the reader has not taken
+    private static final int FRESH = 4;
+
+    private final long[][] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    /**
+     * @param length the size of every frame
+     */
+    public TripleBuffer(int length) {
+        this.buffers = new long[3][length];
+    }
+
+    /**
+     * @return the buffer to write the next frame into, only to be used by the
+     * writer until it calls {@link #publish()}
+     */
+    public long[] back() {
+        return buffers[back];
+    }
+
+    /**
+     * Makes the back buffer the newest frame and hands the writer another
+     * one.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & ~FRESH;
+    }
+
+    /**
+     * @return the newest published frame, which stays unchanged until the
+     * next call, only to be used by the reader
+     */
+    public long[] front() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & ~FRESH;
+        }
+        return buffers[front];
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.cabrales.console.chip8.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes the sound of a Chip8 to a WAV file, as fast as the machine runs.
+ *
+ * Every timer tick becomes 1/60 of a second of 8 bit mono at 44100 hertz,
+ * the tone while the sound timer runs and silence otherwise, so the file
+ * lines up with the frames of the run. Samples are collected in a buffer and
+ * appended to the file when it fills up. The header is written with empty
+ * sizes up front and filled in on close.
+ */
+public final class WavFileSink implements AudioSink, Closeable {
+
+    private static final int HEADER_SIZE = 44;
+    // 8 bit WAV is unsigned, silence is the middle of the range
+    private static final byte SILENCE = (byte) 0x80;
+    private static final byte[] QUIET_TICK = new byte[Tone.SAMPLES_PER_TICK];
+
+    static {
+        Arrays.fill(QUIET_TICK, SILENCE);
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final byte[] tick = new byte[Tone.SAMPLES_PER_TICK];
+    private int phase = 0;
+    private long samples = 0;
+    private IOException failure;
+    private boolean closed = false;
+
+    /**
+     * @param wav the file to write, replaced if it exists
+     * @throws IOException if the file can not be written
+     */
+    public WavFileSink(Path wav) throws IOException {
+        this.channel = FileChannel.open(wav, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeHeader();
+            channel.position(HEADER_SIZE);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public synchronized void play() {
+        phase = Tone.fill(tick, phase);
+        for (int i = 0; i < tick.length; i++) {
+            tick[i] ^= SILENCE;
+        }
+        append(tick);
+    }
+
+    @Override
+    public synchronized void stop() {
+        append(QUIET_TICK);
+    }
+
+    /**
+     * @return the number of samples written so far
+     */
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    private void append(byte[] data) {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            if (buffer.remaining() < data.length) {
+                flush();
+            }
+            buffer.put(data);
+            samples += data.length;
+        } catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        // Sizes above 4 GB do not fit, players read up to the end of the file
+        int dataSize = (int) Math.min(samples, 0xFFFFFFFFL - 36);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952); // "RIFF"
+        header.putInt(36 + dataSize);
+        header.putInt(0x45564157); // "WAVE"
+        header.putInt(0x20746D66); // "fmt "
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) 1); // mono
+        header.putInt(Tone.SAMPLE_RATE);
+        header.putInt(Tone.SAMPLE_RATE); // bytes per second
+        header.putShort((short) 1); // bytes per sample
+        header.putShort((short) 8); // bits per sample
+        header.putInt(0x61746164); // "data"
+        header.putInt(dataSize);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /**
+     * Writes what is left in the buffer, fills in the sizes in the header and
+     * closes the file. Ticks played afterwards are discarded.
+     *
+     * @throws IOException if writing the file failed at any point
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null) {
+                flush();
+                writeHeader();
+            }
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -1,17 +1,16 @@
 package com.cabrales.console.chip8.test;
 
-import java.lang.reflect.Field;
-import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.util.RandomSource;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -25,8 +24,8 @@ import static org.junit.Assert.assertEquals;
  *
  * All other registers will be 0.
  *
- * Additionally we will be using reflection to control the random values
- * generated by java.
+ * Additionally we will be giving the Chip8 a random source which returns known
+ * values.
  *
  */
 public class E02BitwiseOpCodeTest {
@@ -175,14 +174,48 @@ public class E02BitwiseOpCodeTest {
 
     }
 
-    private void controlRandom() {
-        try {
-            Field field = chip8.getClass().getDeclaredField("random");
-            field.setAccessible(true);
-            field.set(chip8, new Random(42));
-        } catch (IllegalArgumentException | IllegalAccessException | NoSuchFieldException | SecurityException ex) {
-            throw new RuntimeException(ex);
+    /**
+     * CXNN can produce every value from 0x00 to 0xFF, and machines seeded
+     * alike produce the same values.
+     */
+    @Test
+    public void testSeededRandom() {
+        Chip8 first = new Chip8();
+        Chip8 second = new Chip8();
+        first.setSeed(42);
+        second.setSeed(42);
+        boolean[] seen = new boolean[0x100];
+        for (int i = 0; i < 10000; i++) {
+            first.execute(0xC0FF);
+            second.execute(0xC0FF);
+            assertEquals(first.getV0(), second.getV0());
+            seen[first.getV0()] = true;
         }
+        for (int value = 0; value < seen.length; value++) {
+            assertTrue("Never produced " + value, seen[value]);
+        }
+    }
+
+    private void controlRandom() {
+        chip8.setRandomSource(new RandomSource() {
+            private final int[] values = new int[]{230, 198, 153, 29};
+            private long next = 0;
+
+            @Override
+            public int nextByte() {
+                return values[(int) (next++ % values.length)];
+            }
+
+            @Override
+            public long getState() {
+                return next;
+            }
+
+            @Override
+            public void setState(long state) {
+                next = state;
+            }
+        });
     }
 
 }
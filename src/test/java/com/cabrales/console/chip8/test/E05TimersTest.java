@@ -56,6 +56,37 @@ public class E05TimersTest {
         }
     }
 
+    /**
+     * The timers can also be counted down in cycles instead of wall clock
+     * time, which makes every run take exactly the same number of cycles.
+     *
+     * The ROM sets the delay timer to 0x15 in its second cycle and then loops
+     * reading it back every third cycle. With a tick every 3 cycles the 21st
+     * tick happens in cycle 63, the loop sees the 0 and skips out, and V5 is
+     * set in cycle 65.
+     */
+    @Test
+    public void testDelayTimerCountdownByCycles() {
+        chip8.setCyclesPerTick(3);
+        while (chip8.getV5() != 255) {
+            chip8.cycle();
+        }
+        assertEquals(65, chip8.getCycleCount());
+    }
+
+    /**
+     * The timers can be ticked from outside the core, for instance by
+     * whatever keeps the machine in step with the clock.
+     */
+    @Test
+    public void testTickTimers() {
+        chip8.execute(0xF015); //Set timer to 0x64
+        chip8.tickTimers();
+        chip8.tickTimers();
+        chip8.execute(0xF107); //Read timer into V1
+        assertEquals(0x62, chip8.getV1());
+    }
+
     /**
      * There is a second timer, the sound timer. The sound timer will emit a
      * tone until it reaches 0. It operates on the same cycle as the delay
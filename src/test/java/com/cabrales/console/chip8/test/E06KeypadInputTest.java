@@ -2,6 +2,7 @@ package com.cabrales.console.chip8.test;
 
 import java.io.IOException;
 import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.util.AtomicKeypad;
 import com.cabrales.console.chip8.util.Chip8Utils;
 import com.cabrales.console.chip8.util.Input;
 import org.junit.After;
@@ -22,6 +23,7 @@ public class E06KeypadInputTest {
     @Before
     public void setUp() throws IOException {
         this.chip8 = Chip8Utils.createFromRom(getClass().getResource("/E06KeypadLoop.ch8"));
+        this.chip8.setKeypad(Input.getKeypad());
         this.chip8.execute(0x6064);
         this.chip8.execute(0x6127);
         this.chip8.execute(0x6212);
@@ -113,5 +115,80 @@ public class E06KeypadInputTest {
         assertEquals(0x202, chip8.getPc());
     }
 
+    /**
+     * Several keys can be held down at once, and letting go of one key leaves
+     * the others pressed.
+     */
+    @Test
+    public void multipleKeysPressed() {
+        Input.press("1");
+        Input.press("2");
+        chip8.execute(0x6001);//Store 0x01 into V0
+        chip8.execute(0x6102);//Store 0x02 into V1
+        chip8.execute(0xE09E);//Skip if 0x01 is pressed (it is)
+        assertEquals(0x202, chip8.getPc());
+        chip8.execute(0xE19E);//Skip if 0x02 is pressed (it is)
+        assertEquals(0x204, chip8.getPc());
+
+        Input.unpress("1");
+        chip8.execute(0xE09E);//Skip if 0x01 is pressed (it isn't)
+        assertEquals(0x204, chip8.getPc());
+        chip8.execute(0xE19E);//Skip if 0x02 is pressed (it is)
+        assertEquals(0x206, chip8.getPc());
+    }
+
+    /**
+     * Typed characters are mapped to keys regardless of case.
+     */
+    @Test
+    public void mappedCharacters() {
+        Input.map(0x5, "q");
+        Input.press('Q');
+        chip8.execute(0x6005);//Store 0x05 into V0
+        chip8.execute(0xE09E);//Skip if 0x05 is pressed (it is)
+        assertEquals(0x202, chip8.getPc());
+
+        Input.unpress('q');
+        Input.press('!');
+        chip8.execute(0xE09E);//Skip if 0x05 is pressed (it isn't)
+        assertEquals(0x202, chip8.getPc());
+        assertEquals(-1, Input.read());
+    }
+
+    /**
+     * A Chip8 with a keypad of its own does not see the keyboard.
+     */
+    @Test
+    public void keypadPerInstance() {
+        AtomicKeypad keypad = new AtomicKeypad();
+        chip8.setKeypad(keypad);
+        Input.press(0x2);
+        chip8.execute(0x6002);//Store 0x02 into V0
+        chip8.execute(0xE09E);//Skip if 0x02 is pressed on the keypad (it isn't)
+        assertEquals(0x200, chip8.getPc());
+
+        keypad.press(0x2);
+        chip8.execute(0xE09E);//Skip if 0x02 is pressed on the keypad (it is)
+        assertEquals(0x202, chip8.getPc());
+
+        keypad.release(0x2);
+        keypad.press(0xC);
+        keypad.press(0x5);
+        chip8.execute(0xF30A);//Wait for a key and store the lowest pressed into V3
+        assertEquals(0x5, chip8.getV3());
+    }
+
+    /**
+     * A new Chip8 has a keypad of its own, so machines running side by side
+     * do not share key presses.
+     */
+    @Test
+    public void keypadNotSharedByDefault() {
+        Chip8 other = new Chip8();
+        Input.press(0x2);
+        other.execute(0x6002);//Store 0x02 into V0
+        other.execute(0xE09E);//Skip if 0x02 is pressed on its keypad (it isn't)
+        assertEquals(0x200, other.getPc());
+    }
 
 }
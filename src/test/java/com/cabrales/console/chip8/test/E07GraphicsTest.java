@@ -1,9 +1,14 @@
 package com.cabrales.console.chip8.test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import com.cabrales.console.chip8.Chip8;
 import com.cabrales.console.chip8.util.Chip8Utils;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -164,6 +169,68 @@ public class E07GraphicsTest {
         chip8.execute(0xD871);
     }
 
+    /**
+     * A collision is reported even when a single pixel is unset.
+     */
+    @Test
+    public void drawSpriteSinglePixelCollision() {
+        chip8.execute(0x6000); //Store 00 in V0
+        chip8.execute(0x6100); //Store 00 in V1
+        chip8.execute(0x6201); //Store 01 in V2
+        chip8.execute(0xF229); // Set I to the font sprite of 1, first row is 0x20
+        chip8.execute(0xD011); // Draw only the first row at 0, 0
+        assertEquals(0, chip8.getVF());
+        assertEquals(1, chip8.getDisplay()[2]);
+
+        chip8.execute(0xD011);
+        assertEquals(1, chip8.getVF());
+        assertEquals(0, chip8.getDisplay()[2]);
+    }
+
+    /**
+     * Renderers can read the display through a read-only view instead of
+     * copying it. The view only changes when pixels change.
+     */
+    @Test
+    public void testDisplayView() {
+        chip8.execute(0xA202);
+        chip8.execute(0xD122); // Draw Sprite at 39, 18
+
+        ByteBuffer view = chip8.getDisplayView();
+        assertTrue(view.isReadOnly());
+        assertArrayEquals(chip8.getDisplay(), toArray(view));
+        assertSame(view, chip8.getDisplayView());
+
+        chip8.execute(0x00E0);
+        ByteBuffer cleared = chip8.getDisplayView();
+        assertNotSame(view, cleared);
+        assertEquals(1, view.get(39 + 64 * 18));
+        assertEquals(0, cleared.get(39 + 64 * 18));
+    }
+
+    /**
+     * Chip8 keeps track of which display rows changed so that only those need
+     * to be repainted.
+     */
+    @Test
+    public void testDirtyRows() {
+        chip8.takeDirtyRows();
+        chip8.execute(0xA202);
+        chip8.execute(0xD122); // Draw Sprite at 39, 18
+        assertEquals((1 << 18) | (1 << 19), chip8.takeDirtyRows());
+        assertEquals(0, chip8.takeDirtyRows());
+
+        chip8.execute(0xD871); // Draw one row at 63, 31
+        chip8.execute(0x00E0);
+        assertEquals((1 << 18) | (1 << 19) | (1 << 31), chip8.takeDirtyRows());
+    }
+
+    private static byte[] toArray(ByteBuffer view) {
+        byte[] pixels = new byte[view.remaining()];
+        view.duplicate().get(pixels);
+        return pixels;
+    }
+
     /**
      * The opcode 00E0 clears the screen.
      *
@@ -0,0 +1,194 @@
+package com.cabrales.console.chip8.test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Function;
+import com.cabrales.console.chip8.BlockEngine;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.CompiledEngine;
+import com.cabrales.console.chip8.ExecutionEngine;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Besides the interpreter there are execution engines which cache or
+ * translate the program in memory. Whatever they cache they must produce
+ * exactly the same machine state as calling cycle on the interpreter.
+ */
+@RunWith(Parameterized.class)
+public class E09ExecutionEngineTest {
+
+    /**
+     * Calls a subroutine three times. Each call uses FX55 to rewrite the first
+     * instruction of the subroutine, so the cached block has to be thrown away
+     * and rebuilt before the next call.
+     */
+    private static final int[] SELF_MODIFYING = new int[]{
+        0x6A00, // 200: VA = 0
+        0x2210, // 202: CALL 210
+        0x7A01, // 204: VA += 1
+        0x3A03, // 206: Skip if VA == 3
+        0x1202, // 208: JP 202
+        0x120A, // 20A: JP 20A
+        0x0000,
+        0x0000,
+        0x6B05, // 210: VB = 5, rewritten to VB = VA
+        0x606B, // 212: V0 = 0x6B
+        0x81A0, // 214: V1 = VA
+        0xA210, // 216: I = 210
+        0xF155, // 218: Store V0 and V1 at 210
+        0x8CB4, // 21A: VC += VB
+        0x00EE  // 21C: RET
+    };
+
+    /**
+     * Draws every hex digit in a row while converting the counter to BCD.
+     */
+    private static final int[] DRAW_DIGITS = new int[]{
+        0x6000, // 200: V0 = 0
+        0x6100, // 202: V1 = 0 (x)
+        0x6200, // 204: V2 = 0 (y)
+        0xF029, // 206: I = font sprite of V0
+        0xD125, // 208: Draw V1, V2
+        0x7105, // 20A: V1 += 5
+        0xA300, // 20C: I = 300
+        0xF033, // 20E: BCD of V0 at 300
+        0x7001, // 210: V0 += 1
+        0x4010, // 212: Skip if V0 != 16
+        0x1214, // 214: JP 214
+        0x1206, // 216: JP 206
+    };
+
+    /**
+     * Jumps through a table with BNNN, the target depends on V0.
+     */
+    private static final int[] INDIRECT_JUMP = new int[]{
+        0x6000, // 200: V0 = 0
+        0xB206, // 202: JP 206 + V0
+        0x0000,
+        0x7101, // 206: V1 += 1
+        0x7201, // 208: V2 += 1
+        0x7301, // 20A: V3 += 1
+        0x7002, // 20C: V0 += 2
+        0x3008, // 20E: Skip if V0 == 8
+        0x1202, // 210: JP 202
+        0x1212, // 212: JP 212
+    };
+
+    /**
+     * Runs the arithmetic instructions with carries and borrows in a loop and
+     * reads the delay timer while it counts down.
+     */
+    private static final int[] ARITHMETIC = new int[]{
+        0x6037, // 200: V0 = 0x37
+        0x61C9, // 202: V1 = 0xC9
+        0x6FFF, // 204: VF = 0xFF
+        0xF015, // 206: Delay timer = V0
+        0x8204, // 208: V2 = V0 + V1, VF = carry
+        0x8314, // 20A: V3 = V1 + V1, VF = carry
+        0x8405, // 20C: V4 = V0 - V0, VF = not borrow
+        0x8515, // 20E: V5 = V1 - V1, VF = not borrow
+        0x8607, // 210: V6 = V0 - V6, VF = not borrow
+        0x8716, // 212: V7 = V1 >> 1, VF = lowest bit
+        0x881E, // 214: V8 = V1 << 1, VF = highest bit
+        0x8F14, // 216: VF = VF + V1
+        0x89F0, // 218: V9 = VF
+        0x7013, // 21A: V0 += 0x13
+        0x7107, // 21C: V1 += 7
+        0xFA07, // 21E: VA = delay timer
+        0xF01E, // 220: I += V0
+        0x3A00, // 222: Skip if VA == 0
+        0x1208, // 224: JP 208
+        0x1206, // 226: JP 206
+    };
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> engines() {
+        Function<Chip8, ExecutionEngine> block = BlockEngine::new;
+        Function<Chip8, ExecutionEngine> compiled = CompiledEngine::new;
+        return Arrays.asList(new Object[][]{
+            {"BlockEngine", block},
+            {"CompiledEngine", compiled}
+        });
+    }
+
+    private final Function<Chip8, ExecutionEngine> engineFactory;
+
+    public E09ExecutionEngineTest(String name, Function<Chip8, ExecutionEngine> engineFactory) {
+        this.engineFactory = engineFactory;
+    }
+
+    @Test
+    public void testSelfModifyingCodeMatchesInterpreter() {
+        Chip8 interpreted = TestPrograms.load(SELF_MODIFYING);
+        Chip8 cached = TestPrograms.load(SELF_MODIFYING);
+        ExecutionEngine engine = engineFactory.apply(cached);
+
+        for (int i = 0; i < 200; i++) {
+            interpreted.cycle();
+        }
+        engine.run(200);
+
+        assertEquals(6, interpreted.getVC());
+        assertSameState(interpreted, cached);
+    }
+
+    @Test
+    public void testSingleStepsMatchInterpreter() {
+        Chip8 interpreted = TestPrograms.load(DRAW_DIGITS);
+        Chip8 cached = TestPrograms.load(DRAW_DIGITS);
+        ExecutionEngine engine = engineFactory.apply(cached);
+
+        for (int i = 0; i < 300; i++) {
+            interpreted.cycle();
+            engine.cycle();
+            assertEquals(interpreted.getPc(), cached.getPc());
+        }
+        assertSameState(interpreted, cached);
+    }
+
+    @Test
+    public void testIndirectJumpMatchesInterpreter() {
+        Chip8 interpreted = TestPrograms.load(INDIRECT_JUMP);
+        Chip8 cached = TestPrograms.load(INDIRECT_JUMP);
+        ExecutionEngine engine = engineFactory.apply(cached);
+
+        interpreted.run(100);
+        engine.run(100);
+
+        assertEquals(0x212, interpreted.getPc());
+        assertEquals(3, interpreted.getV3());
+        assertSameState(interpreted, cached);
+    }
+
+    @Test
+    public void testArithmeticAndTimersMatchInterpreter() {
+        Chip8 interpreted = TestPrograms.load(ARITHMETIC, 3);
+        Chip8 cached = TestPrograms.load(ARITHMETIC, 3);
+        ExecutionEngine engine = engineFactory.apply(cached);
+
+        for (int chunk = 1; chunk <= 40; chunk++) {
+            interpreted.run(chunk * 7);
+            engine.run(chunk * 7);
+            assertEquals(interpreted.getCycleCount(), cached.getCycleCount());
+            assertEquals(interpreted.getDelayTimer(), cached.getDelayTimer());
+            assertSameState(interpreted, cached);
+        }
+    }
+
+    private static void assertSameState(Chip8 expected, Chip8 actual) {
+        assertEquals(expected.getPc(), actual.getPc());
+        assertEquals(expected.getSp(), actual.getSp());
+        assertEquals(expected.getiRegister(), actual.getiRegister());
+        for (int i = 0; i < 0x10; i++) {
+            assertEquals(expected.getVX(i), actual.getVX(i));
+        }
+        assertArrayEquals(expected.getMemory(), actual.getMemory());
+        assertArrayEquals(expected.getDisplay(), actual.getDisplay());
+    }
+
+}
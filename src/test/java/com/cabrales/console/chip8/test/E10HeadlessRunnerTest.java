@@ -0,0 +1,136 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.HeadlessRunner;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.Input;
+import com.cabrales.console.chip8.util.InputScript;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * ROMs can be run without a window for a fixed number of cycles, with the
+ * keypad driven by a script.
+ */
+public class E10HeadlessRunnerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void unpress() {
+        Input.unpress();
+    }
+
+    @Test
+    public void testTimerLoopRunsToCompletion() throws IOException {
+        Chip8 chip8 = Chip8Utils.createFromRom(getClass().getResource("/E05TimerLoop.ch8"));
+        HeadlessRunner runner = new HeadlessRunner(chip8, chip8, 3);
+        HeadlessRunner.Result result = runner.run(65);
+
+        assertNull(result.getError());
+        assertEquals(65, result.getCycles());
+        assertEquals(21, result.getFrames());
+        assertEquals(255, chip8.getV5());
+    }
+
+    @Test
+    public void testInputScriptPressesKeys() throws IOException {
+        File script = folder.newFile("keys.txt");
+        Files.write(script.toPath(), Arrays.asList("# press A", "50 a"), StandardCharsets.UTF_8);
+
+        Chip8 chip8 = Chip8Utils.createFromRom(getClass().getResource("/E06KeypadLoop.ch8"));
+        HeadlessRunner runner = new HeadlessRunner(chip8, chip8, 10);
+        runner.setInputScript(InputScript.parse(script.toPath()));
+
+        runner.run(50);
+        assertEquals(0x200, chip8.getPc());
+        runner.run(1);
+        assertEquals(0xA, chip8.getV6());
+        assertEquals(0x202, chip8.getPc());
+    }
+
+    @Test
+    public void testScriptedKeysAreHeldTogether() throws IOException {
+        File script = folder.newFile("keys.txt");
+        Files.write(script.toPath(), Arrays.asList("10 5", "20 7", "40 -5"), StandardCharsets.UTF_8);
+
+        Chip8 chip8 = TestPrograms.load(new int[]{
+            0x6005, // 200: V0 = 5
+            0x6107, // 202: V1 = 7
+            0xE09E, // 204: Skip if key V0 is pressed
+            0x1204, // 206: JP 204
+            0xE19E, // 208: Skip if key V1 is pressed
+            0x1204, // 20A: JP 204
+            0xE0A1, // 20C: Skip if key V0 is not pressed
+            0x120C, // 20E: JP 20C
+            0x1210  // 210: JP 210
+        }, 10);
+        HeadlessRunner runner = new HeadlessRunner(chip8, chip8, 10);
+        runner.setInputScript(InputScript.parse(script.toPath()));
+
+        runner.run(30);
+        assertEquals(0x20C, chip8.getPc() & ~0x2);
+        runner.run(20);
+        assertEquals(0x210, chip8.getPc());
+    }
+
+    @Test
+    public void testInvalidScriptKeysAreRejected() throws IOException {
+        for (String key : new String[]{"-10", "--5", "+5", "10", "g", "-g"}) {
+            File script = folder.newFile("invalid" + key + ".txt");
+            Files.write(script.toPath(), Arrays.asList("10 " + key), StandardCharsets.UTF_8);
+            try {
+                InputScript.parse(script.toPath());
+                fail("Accepted key " + key);
+            } catch (IOException ex) {
+                assertTrue(ex.getMessage().endsWith("invalid cycle or key"));
+            }
+        }
+
+        File script = folder.newFile("valid.txt");
+        Files.write(script.toPath(), Arrays.asList("10 F", "20 -f", "30 -"), StandardCharsets.UTF_8);
+        InputScript valid = InputScript.parse(script.toPath());
+        assertEquals(0x8000, valid.getPressed(0));
+        assertEquals(0x8000, valid.getReleased(1));
+        assertEquals(0xFFFF, valid.getReleased(2));
+    }
+
+    @Test
+    public void testFrameHashesAreRecorded() throws IOException {
+        Chip8 chip8 = Chip8Utils.createFromRom(getClass().getResource("/E05TimerLoop.ch8"));
+        HeadlessRunner runner = new HeadlessRunner(chip8, chip8, 10);
+        runner.setRecordFrameHashes(true);
+        HeadlessRunner.Result result = runner.run(35);
+
+        assertNull(result.getError());
+
+        long[] hashes = result.getFrameHashes();
+        assertEquals(3, hashes.length);
+        assertEquals(result.getDisplayHash(), hashes[2]);
+        assertTrue(result.toJson("E05TimerLoop.ch8").startsWith("{\"rom\":\"E05TimerLoop.ch8\",\"cycles\":35,"));
+    }
+
+    @Test
+    public void testUnsupportedOpcodeStopsTheRun() throws IOException {
+        Chip8 chip8 = Chip8Utils.createFromRom(getClass().getResource("/E03TestRom.ch8"));
+        HeadlessRunner runner = new HeadlessRunner(chip8, chip8, 10);
+        HeadlessRunner.Result result = runner.run(100);
+
+        assertNotNull(result.getError());
+        assertEquals(5, result.getCycles());
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.Chip8Farm;
+import com.cabrales.console.chip8.CompiledEngine;
+import com.cabrales.console.chip8.HeadlessRunner;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.InputScript;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Many ROMs can be run side by side, each with its own keypad input.
+ */
+public class E11FarmTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJobsKeepTheirOwnInput() throws IOException, URISyntaxException {
+        File script = folder.newFile("keys.txt");
+        Files.write(script.toPath(), Collections.singletonList("50 a"), StandardCharsets.UTF_8);
+        InputScript pressA = InputScript.parse(script.toPath());
+        Path rom = Paths.get(getClass().getResource("/E06KeypadLoop.ch8").toURI());
+
+        List<Chip8Farm.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            jobs.add(new Chip8Farm.Job(rom, i % 2 == 0 ? pressA : InputScript.EMPTY, 51, 10));
+        }
+
+        Chip8Farm.Report report;
+        try (Chip8Farm farm = new Chip8Farm(4, chip8 -> chip8)) {
+            report = farm.run(jobs);
+        }
+
+        assertEquals(32, report.getResults().size());
+        assertEquals(0, report.getErrors());
+        assertEquals(32 * 51, report.getCycles());
+        HeadlessRunner.Result pressed = report.getResults().get(0);
+        HeadlessRunner.Result waiting = report.getResults().get(1);
+        assertNotEquals(pressed.toJson("rom"), waiting.toJson("rom"));
+        for (int i = 0; i < jobs.size(); i++) {
+            HeadlessRunner.Result expected = i % 2 == 0 ? pressed : waiting;
+            assertEquals(expected.getDisplayHash(), report.getResults().get(i).getDisplayHash());
+            assertNull(report.getResults().get(i).getError());
+        }
+    }
+
+    @Test
+    public void testMatchesASingleRun() throws IOException, URISyntaxException {
+        Path rom = Paths.get(getClass().getResource("/E05TimerLoop.ch8").toURI());
+        Chip8 chip8 = Chip8Utils.createFromRom(rom);
+        HeadlessRunner.Result expected = new HeadlessRunner(chip8, chip8, 3).run(65);
+
+        Chip8Farm.Report report;
+        try (Chip8Farm farm = new Chip8Farm(2, CompiledEngine::new)) {
+            report = farm.run(Collections.nCopies(4, new Chip8Farm.Job(rom, InputScript.EMPTY, 65, 3)));
+        }
+
+        for (HeadlessRunner.Result result : report.getResults()) {
+            assertEquals(stripTimings(expected.toJson("rom")), stripTimings(result.toJson("rom")));
+        }
+    }
+
+    @Test
+    public void testUnreadableRomIsReported() {
+        Chip8Farm.Report report;
+        try (Chip8Farm farm = new Chip8Farm(1, chip8 -> chip8)) {
+            report = farm.run(Collections.singletonList(
+                    new Chip8Farm.Job(Paths.get(folder.getRoot().getPath(), "missing.ch8"), InputScript.EMPTY, 10, 10)));
+        }
+
+        assertEquals(1, report.getErrors());
+        assertNotNull(report.getResults().get(0).getError());
+        assertEquals(0, report.getCycles());
+    }
+
+    @Test
+    public void testFailingEngineOnlyFailsItsJob() throws URISyntaxException {
+        Path rom = Paths.get(getClass().getResource("/E05TimerLoop.ch8").toURI());
+        AtomicInteger engines = new AtomicInteger();
+
+        Chip8Farm.Report report;
+        try (Chip8Farm farm = new Chip8Farm(2, chip8 -> {
+            if (engines.getAndIncrement() == 1) {
+                throw new IllegalStateException("No engine");
+            }
+            return chip8;
+        })) {
+            report = farm.run(Collections.nCopies(4, new Chip8Farm.Job(rom, InputScript.EMPTY, 65, 3)));
+        }
+
+        assertEquals(4, report.getResults().size());
+        assertEquals(1, report.getErrors());
+        assertEquals(3 * 65, report.getCycles());
+    }
+
+    private static String stripTimings(String json) {
+        return json.replaceAll("\"(elapsedNanos|instructionsPerSecond)\":\\d+", "");
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.CompiledEngine;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * The whole machine can be saved to a snapshot and later restored, after
+ * which it carries on exactly as it did when the snapshot was taken.
+ */
+public class E12SaveStateTest {
+
+    /**
+     * Draws random sprites at random positions.
+     */
+    private static final int[] RANDOM_SPRITES = new int[]{
+        0xC03F, // 200: V0 = random & 0x3F
+        0xC11F, // 202: V1 = random & 0x1F
+        0xC20F, // 204: V2 = random & 0x0F
+        0xF229, // 206: I = font sprite of V2
+        0xD015, // 208: Draw V0, V1
+        0xF215, // 20A: DT = V2
+        0x1200  // 20C: JP 200
+    };
+
+    @Test
+    public void testRestoreRepeatsTheSameRun() {
+        Chip8 chip8 = TestPrograms.load(RANDOM_SPRITES, 10);
+        chip8.run(500);
+        byte[] snapshot = chip8.saveState();
+        assertEquals(chip8.getSnapshotSize(), snapshot.length);
+
+        chip8.run(500);
+        byte[] expected = chip8.saveState();
+
+        chip8.restoreState(snapshot);
+        assertEquals(500, chip8.getCycleCount());
+        chip8.run(500);
+        assertArrayEquals(expected, chip8.saveState());
+    }
+
+    @Test
+    public void testRestoreIntoAnotherMachine() throws IOException {
+        Chip8 chip8 = Chip8Utils.createFromRom(getClass().getResource("/E07GraphicsRom.ch8"));
+        chip8.setCyclesPerTick(10);
+        chip8.run(200);
+        ByteBuffer snapshot = ByteBuffer.allocateDirect(chip8.getSnapshotSize());
+        chip8.saveState(snapshot);
+        snapshot.flip();
+
+        Chip8 copy = new Chip8();
+        copy.restoreState(snapshot);
+        assertEquals(0, snapshot.remaining());
+        assertEquals(chip8.getPc(), copy.getPc());
+        assertEquals(chip8.getiRegister(), copy.getiRegister());
+        assertEquals(chip8.getCycleCount(), copy.getCycleCount());
+        assertArrayEquals(chip8.getMemory(), copy.getMemory());
+        assertArrayEquals(chip8.getDisplay(), copy.getDisplay());
+        assertEquals(chip8.getDisplayView(), copy.getDisplayView());
+        assertEquals(-1, copy.takeDirtyRows());
+    }
+
+    /**
+     * An engine running the machine must not keep running the code it
+     * translated before the restore.
+     */
+    @Test
+    public void testRestoreResetsTheEngine() {
+        Chip8 other = TestPrograms.load(new int[]{
+            0x6105, // 200: V1 = 5
+            0x7101, // 202: V1 += 1
+            0x1202  // 204: JP 202
+        }, 10);
+        byte[] snapshot = other.saveState();
+
+        Chip8 chip8 = TestPrograms.load(RANDOM_SPRITES, 10);
+        CompiledEngine engine = new CompiledEngine(chip8);
+        engine.run(100);
+        chip8.restoreState(snapshot);
+        engine.run(6);
+        assertEquals(8, chip8.getV1());
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        Chip8 chip8 = TestPrograms.load(RANDOM_SPRITES, 10);
+        byte[] snapshot = chip8.saveState();
+        snapshot[0] = 0;
+        try {
+            chip8.restoreState(snapshot);
+            fail("Restored a snapshot without the magic number");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        byte[] truncated = new byte[100];
+        System.arraycopy(chip8.saveState(), 0, truncated, 0, truncated.length);
+        try {
+            chip8.restoreState(truncated);
+            fail("Restored a truncated snapshot");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0x200, chip8.getPc());
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.cabrales.console.chip8.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.util.RewindBuffer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * The last frames of a running machine are kept so it can be stepped
+ * backwards, frame by frame, to exactly the states it went through.
+ */
+public class E13RewindBufferTest {
+
+    /**
+     * Draws random sprites, counts in V4 and stores it over the code at 300.
+     */
+    private static final int[] PROGRAM = new int[]{
+        0xC03F, // 200: V0 = random & 0x3F
+        0xC11F, // 202: V1 = random & 0x1F
+        0xC20F, // 204: V2 = random & 0x0F
+        0xF229, // 206: I = font sprite of V2
+        0xD015, // 208: Draw V0, V1
+        0x7401, // 20A: V4 += 1
+        0xA300, // 20C: I = 300
+        0xF433, // 20E: BCD of V4 at 300
+        0x1200  // 210: JP 200
+    };
+
+    @Test
+    public void testStepBackThroughFrames() {
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        RewindBuffer rewind = new RewindBuffer(200, 1 << 20);
+        List<byte[]> frames = new ArrayList<>();
+        for (int frame = 0; frame < 150; frame++) {
+            chip8.run(10);
+            rewind.capture(chip8);
+            frames.add(chip8.saveState());
+        }
+        assertEquals(149, rewind.size());
+
+        for (int frame = 148; frame >= 0; frame--) {
+            assertTrue(rewind.stepBack(chip8));
+            assertArrayEquals(frames.get(frame), chip8.saveState());
+        }
+        assertFalse(rewind.stepBack(chip8));
+        assertArrayEquals(frames.get(0), chip8.saveState());
+    }
+
+    @Test
+    public void testCaptureAfterStepBack() {
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        RewindBuffer rewind = new RewindBuffer(200, 1 << 20);
+        List<byte[]> frames = new ArrayList<>();
+        for (int frame = 0; frame < 100; frame++) {
+            chip8.run(10);
+            rewind.capture(chip8);
+            frames.add(chip8.saveState());
+        }
+        for (int i = 0; i < 30; i++) {
+            rewind.stepBack(chip8);
+        }
+        for (int frame = 70; frame < 100; frame++) {
+            chip8.run(10);
+            rewind.capture(chip8);
+            assertArrayEquals(frames.get(frame), chip8.saveState());
+        }
+        for (int frame = 98; frame >= 90; frame--) {
+            assertTrue(rewind.stepBack(chip8));
+            assertArrayEquals(frames.get(frame), chip8.saveState());
+        }
+    }
+
+    /**
+     * When the storage is full the oldest frames are dropped, the rest can
+     * still be restored.
+     */
+    @Test
+    public void testMemoryIsBounded() {
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        RewindBuffer rewind = new RewindBuffer(1000, 32 * 1024);
+        List<byte[]> frames = new ArrayList<>();
+        for (int frame = 0; frame < 1000; frame++) {
+            chip8.run(10);
+            rewind.capture(chip8);
+            frames.add(chip8.saveState());
+        }
+        int kept = rewind.size();
+        assertTrue(kept > 0 && kept < 999);
+
+        for (int frame = 998; frame >= 999 - kept; frame--) {
+            assertTrue(rewind.stepBack(chip8));
+            assertArrayEquals(frames.get(frame), chip8.saveState());
+        }
+        assertFalse(rewind.stepBack(chip8));
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.CompiledEngine;
+import com.cabrales.console.chip8.util.AtomicKeypad;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.MoviePlayer;
+import com.cabrales.console.chip8.util.MovieRecorder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The keys read by a machine can be recorded to a movie and replayed, which
+ * takes the machine through exactly the same states again.
+ */
+public class E14MovieTest {
+
+    /**
+     * Waits for a key and draws it at a random position for as long as it is
+     * held.
+     */
+    private static final int[] PROGRAM = new int[]{
+        0xF10A, // 200: Wait for a key and store it in V1
+        0xC23F, // 202: V2 = random & 0x3F
+        0xC31F, // 204: V3 = random & 0x1F
+        0xF129, // 206: I = font sprite of V1
+        0xD235, // 208: Draw V2, V3
+        0xE1A1, // 20A: Skip if V1 is not pressed
+        0x120A, // 20C: JP 20A
+        0x1200  // 20E: JP 200
+    };
+
+    /**
+     * Frame, key and 1 to press or 0 to release it.
+     */
+    private static final int[][] PRESSES = new int[][]{
+        {3, 0x5, 1}, {8, 0x5, 0}, {10, 0x9, 1}, {10, 0x5, 1}, {15, 0x5, 0}, {20, 0x9, 0},
+        {21, 0xC, 1}, {22, 0xC, 0}, {30, 0x0, 1}, {40, 0x0, 0}, {41, 0xF, 1}, {42, 0xF, 0}
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplayIsIdentical() throws IOException {
+        Path movie = folder.getRoot().toPath().resolve("test.c8m");
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        AtomicKeypad keypad = new AtomicKeypad();
+        long[] hashes = new long[50];
+        try (MovieRecorder recorder = new MovieRecorder(movie, chip8, keypad)) {
+            chip8.setKeypad(recorder);
+            run(chip8, keypad, hashes);
+        }
+        byte[] expected = chip8.saveState();
+
+        Chip8 replay = new Chip8();
+        try (MoviePlayer player = new MoviePlayer(movie, replay)) {
+            replay.setKeypad(player);
+            CompiledEngine engine = new CompiledEngine(replay);
+            for (int frame = 0; frame < hashes.length; frame++) {
+                engine.run(10);
+                assertEquals("Frame " + frame, hashes[frame], Chip8Utils.hashDisplay(replay));
+            }
+            assertTrue(player.isFinished());
+        }
+        assertArrayEquals(expected, replay.saveState());
+    }
+
+    @Test
+    public void testMovieIsCompact() throws IOException {
+        Path movie = folder.getRoot().toPath().resolve("test.c8m");
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        AtomicKeypad keypad = new AtomicKeypad();
+        try (MovieRecorder recorder = new MovieRecorder(movie, chip8, keypad)) {
+            chip8.setKeypad(recorder);
+            run(chip8, keypad, new long[50]);
+        }
+        // The snapshot, then at most three bytes for each of the key changes
+        assertTrue(Files.size(movie) <= 12 + chip8.getSnapshotSize() + 3 * PRESSES.length);
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path other = folder.newFile("other.c8m").toPath();
+        Files.write(other, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        try {
+            new MoviePlayer(other, new Chip8()).close();
+            fail("Played a file which is not a movie");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static void run(Chip8 chip8, AtomicKeypad keypad, long[] hashes) {
+        for (int frame = 0, press = 0; frame < hashes.length; frame++) {
+            for (; press < PRESSES.length && PRESSES[press][0] == frame; press++) {
+                if (PRESSES[press][2] == 1) {
+                    keypad.press(PRESSES[press][1]);
+                } else {
+                    keypad.release(PRESSES[press][1]);
+                }
+            }
+            chip8.run(10);
+            hashes[frame] = Chip8Utils.hashDisplay(chip8);
+        }
+    }
+
+}
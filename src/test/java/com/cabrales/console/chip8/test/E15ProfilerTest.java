@@ -0,0 +1,101 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.IOException;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.ProfilingEngine;
+import com.cabrales.console.chip8.util.AtomicKeypad;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * The profiler runs a machine like the interpreter while counting the
+ * instructions by address, opcode and call path.
+ */
+public class E15ProfilerTest {
+
+    /**
+     * Waits for a key, then calls a subroutine which loops three times,
+     * twice over.
+     */
+    private static final int[] PROGRAM = new int[]{
+        0xF00A, // 200: Wait for a key and store it in V0
+        0x2210, // 202: CALL 210
+        0x2210, // 204: CALL 210
+        0x1206, // 206: JP 206
+        0x0000,
+        0x0000,
+        0x0000,
+        0x0000,
+        0x6100, // 210: V1 = 0
+        0x7101, // 212: V1 += 1
+        0x3103, // 214: Skip if V1 == 3
+        0x1212, // 216: JP 212
+        0x00EE  // 218: RET
+    };
+
+    @Test
+    public void testCounts() throws IOException {
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        AtomicKeypad keypad = new AtomicKeypad();
+        chip8.setKeypad(keypad);
+        ProfilingEngine profiler = new ProfilingEngine(chip8);
+
+        profiler.run(5);
+        keypad.press(0x7);
+        profiler.run(45);
+
+        assertEquals(50, profiler.getInstructions());
+        assertEquals(6, profiler.getCount(0x200));
+        assertEquals(1, profiler.getKeyWaits());
+        assertEquals(5, profiler.getWaitCycles());
+        assertEquals(2, profiler.getCalls(0x210));
+        assertEquals(6, profiler.getCount(0x212));
+        assertEquals(4, profiler.getCount(0x216));
+        assertEquals(50 - 6 - 2 - 2 * 10, profiler.getCount(0x206));
+
+        StringBuilder stacks = new StringBuilder();
+        profiler.writeCollapsedStacks(stacks);
+        assertEquals("main 30\nmain;0x210 20\n", stacks.toString());
+
+        StringBuilder report = new StringBuilder();
+        profiler.writeReport(report);
+        assertTrue(report.toString().contains("0x212-0x216"));
+    }
+
+    @Test
+    public void testSameStateAsInterpreter() {
+        Chip8 expected = TestPrograms.load(PROGRAM, 10);
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        expected.setSeed(0);
+        chip8.setSeed(0);
+        AtomicKeypad keypad = new AtomicKeypad();
+        keypad.press(0x3);
+        expected.setKeypad(keypad);
+        chip8.setKeypad(keypad);
+
+        expected.run(100);
+        new ProfilingEngine(chip8).run(100);
+        assertArrayEquals(expected.saveState(), chip8.saveState());
+    }
+
+    /**
+     * Calls already on the stack when profiling starts are part of the call
+     * path.
+     */
+    @Test
+    public void testStartsInsideACall() throws IOException {
+        Chip8 chip8 = TestPrograms.load(PROGRAM, 10);
+        chip8.setKeypad(() -> 1);
+        chip8.run(3);
+        assertEquals(0x212, chip8.getPc());
+
+        ProfilingEngine profiler = new ProfilingEngine(chip8);
+        profiler.run(3);
+        StringBuilder stacks = new StringBuilder();
+        profiler.writeCollapsedStacks(stacks);
+        assertEquals("main;0x210 3\n", stacks.toString());
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.cabrales.console.chip8.test;
+
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import com.cabrales.console.chip8.BlockEngine;
+import com.cabrales.console.chip8.Chip8Farm;
+import com.cabrales.console.chip8.util.EmulatorMetrics;
+import com.cabrales.console.chip8.util.FrameScheduler;
+import com.cabrales.console.chip8.util.InputScript;
+import com.cabrales.console.chip8.util.LatencyHistogram;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Throughput and frame timing are counted and published over JMX.
+ */
+public class E16MetricsTest {
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertWithin(500_000, histogram.getValueAtPercentile(50));
+        assertWithin(990_000, histogram.getValueAtPercentile(99));
+        assertWithin(1_000_000, histogram.getValueAtPercentile(100));
+        assertWithin(1000, histogram.getValueAtPercentile(0));
+
+        histogram.record(7);
+        histogram.record(-5);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testFrameTimesAndDrift() {
+        EmulatorMetrics metrics = new EmulatorMetrics();
+        long start = 1_000_000_000L;
+        long work = 2_000_000L;
+        for (int i = 0; i < 10; i++) {
+            long frameStart = start + i * FrameScheduler.FRAME_NANOS;
+            metrics.frame(frameStart, frameStart + work);
+        }
+        // One frame a whole frame late, which takes longer
+        long lateStart = start + 11 * FrameScheduler.FRAME_NANOS;
+        metrics.frame(lateStart, lateStart + 4 * work);
+        metrics.addDroppedFrames(3);
+        metrics.addInstructions(110);
+
+        assertEquals(11, metrics.getFrames());
+        assertEquals(3, metrics.getDroppedFrames());
+        assertEquals(110, metrics.getInstructions());
+        assertEquals(work / 1e6, metrics.getFrameTimeMillis50(), 0.2);
+        assertEquals(4 * work / 1e6, metrics.getFrameTimeMillisMax(), 0.5);
+        assertEquals(0, metrics.getFrameJitter().getValueAtPercentile(50));
+        assertEquals(FrameScheduler.FRAME_NANOS / 1e6, metrics.getFrameJitterMillisMax(), 1);
+        assertEquals(FrameScheduler.FRAME_NANOS / 1e6, metrics.getTimerDriftMillis(), 0.001);
+
+        metrics.reset();
+        assertEquals(0, metrics.getFrames());
+        assertEquals(0, metrics.getTimerDriftMillis(), 0);
+        assertEquals(0, metrics.getFrameTimeMillisMax(), 0);
+        assertEquals(0, metrics.getFrameJitterMillisMax(), 0);
+    }
+
+    @Test
+    public void testPublishedOverJmx() throws JMException {
+        EmulatorMetrics metrics = new EmulatorMetrics();
+        metrics.addInstructions(42);
+        metrics.audioUnderrun();
+        metrics.register("E16");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(EmulatorMetrics.DOMAIN + ":type=Emulator,name=E16");
+        try {
+            assertEquals(42L, server.getAttribute(name, "Instructions"));
+            assertEquals(1L, server.getAttribute(name, "AudioUnderruns"));
+            assertTrue((Long) server.getAttribute(name, "GcCount") >= 0);
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0L, server.getAttribute(name, "Instructions"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testFarmCountsEveryJob() throws URISyntaxException {
+        Path rom = Paths.get(getClass().getResource("/E06KeypadLoop.ch8").toURI());
+        List<Chip8Farm.Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            jobs.add(new Chip8Farm.Job(rom, InputScript.EMPTY, 100_000, 10));
+        }
+        try (Chip8Farm farm = new Chip8Farm(4, BlockEngine::new)) {
+            farm.run(jobs);
+            assertEquals(8 * 100_000, farm.getMetrics().getInstructions());
+            assertEquals(8 * 10_000, farm.getMetrics().getFrames());
+        }
+    }
+
+    // Within the 1/16 precision of the histogram
+    private static void assertWithin(long expected, long actual) {
+        assertEquals(expected, actual, expected / 16.0);
+    }
+
+}
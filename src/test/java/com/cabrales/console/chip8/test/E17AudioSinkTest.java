@@ -0,0 +1,86 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.util.WavFileSink;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The sound of a machine can be written to a WAV file, one tick of tone or
+ * silence for every timer tick.
+ */
+public class E17AudioSinkTest {
+
+    private static final int SAMPLES_PER_TICK = 44100 / 60;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWavHeader() throws IOException {
+        File file = folder.newFile("sound.wav");
+        try (WavFileSink sink = new WavFileSink(file.toPath())) {
+            sink.stop();
+            sink.play();
+            sink.play();
+            assertEquals(3 * SAMPLES_PER_TICK, sink.getSamples());
+        }
+
+        byte[] wav = Files.readAllBytes(file.toPath());
+        assertEquals(44 + 3 * SAMPLES_PER_TICK, wav.length);
+        ByteBuffer header = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("RIFF", new String(wav, 0, 4, "US-ASCII"));
+        assertEquals(wav.length - 8, header.getInt(4));
+        assertEquals("WAVEfmt ", new String(wav, 8, 8, "US-ASCII"));
+        assertEquals(1, header.getShort(20));
+        assertEquals(1, header.getShort(22));
+        assertEquals(44100, header.getInt(24));
+        assertEquals(8, header.getShort(34));
+        assertEquals("data", new String(wav, 36, 4, "US-ASCII"));
+        assertEquals(3 * SAMPLES_PER_TICK, header.getInt(40));
+
+        assertEquals(0, toneTicks(wav, 0, 1));
+        assertEquals(2, toneTicks(wav, 1, 3));
+    }
+
+    @Test
+    public void testSoundTimerTicks() throws IOException {
+        Chip8 chip8 = TestPrograms.load(new int[]{
+            0x6005, // 200: V0 = 5
+            0xF018, // 202: Sound timer = V0
+            0x1204  // 204: JP 204
+        }, 10);
+
+        File file = folder.newFile("timer.wav");
+        try (WavFileSink sink = new WavFileSink(file.toPath())) {
+            chip8.setAudioSink(sink);
+            chip8.run(100);
+        }
+
+        byte[] wav = Files.readAllBytes(file.toPath());
+        assertEquals(44 + 10 * SAMPLES_PER_TICK, wav.length);
+        assertEquals(5, toneTicks(wav, 0, 10));
+    }
+
+    // Ticks in the range which are not all silence
+    private static int toneTicks(byte[] wav, int from, int to) {
+        int ticks = 0;
+        for (int tick = from; tick < to; tick++) {
+            for (int i = 0; i < SAMPLES_PER_TICK; i++) {
+                if (wav[44 + tick * SAMPLES_PER_TICK + i] != (byte) 0x80) {
+                    ticks++;
+                    break;
+                }
+            }
+        }
+        return ticks;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.cabrales.console.chip8.test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.cabrales.console.chip8.util.TripleBuffer;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Frames are handed from the thread running the machine to the thread
+ * painting it whole and in order.
+ */
+public class E18TripleBufferTest {
+
+    @Test
+    public void testNewestFrameWins() {
+        TripleBuffer frames = new TripleBuffer(2);
+        assertArrayEquals(new long[]{0, 0}, frames.front());
+
+        frames.back()[0] = 1;
+        frames.publish();
+        frames.back()[0] = 2;
+        frames.publish();
+        assertEquals(2, frames.front()[0]);
+        // Nothing new, the same frame again
+        assertEquals(2, frames.front()[0]);
+
+        frames.back()[0] = 3;
+        frames.publish();
+        assertEquals(3, frames.front()[0]);
+    }
+
+    @Test(timeout = 10000)
+    public void testFramesAreNeverTorn() throws InterruptedException {
+        TripleBuffer frames = new TripleBuffer(32);
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            for (long frame = 1; frame <= 200_000; frame++) {
+                Arrays.fill(frames.back(), frame);
+                frames.publish();
+            }
+            done.set(true);
+        });
+        writer.start();
+
+        long last = 0;
+        boolean finished;
+        do {
+            finished = done.get();
+            long[] rows = frames.front();
+            for (long row : rows) {
+                assertEquals(rows[0], row);
+            }
+            assertTrue(rows[0] >= last);
+            last = rows[0];
+        } while (!finished);
+        writer.join();
+        assertEquals(200_000, last);
+    }
+
+}
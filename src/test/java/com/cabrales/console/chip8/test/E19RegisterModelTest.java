@@ -0,0 +1,67 @@
+package com.cabrales.console.chip8.test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.Chip8Model;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * The register table is updated on the EDT with one event per change,
+ * covering only the rows which changed.
+ */
+public class E19RegisterModelTest {
+
+    @Test
+    public void testBatchedUpdates() throws InterruptedException, InvocationTargetException {
+        Chip8Model model = new Chip8Model();
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+        assertEquals(20, model.getRowCount());
+        assertEquals("VA", model.getValueAt(10, 0));
+
+        Chip8 chip8 = new Chip8();
+        model.update(chip8);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        assertEquals(1, events.size());
+        assertEquals("200", model.getValueAt(18, 1));
+        assertEquals("0", model.getValueAt(3, 1));
+
+        // Nothing changed, nothing is fired
+        model.update(chip8);
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        assertEquals(1, events.size());
+
+        // Samples taken while the EDT is busy are shown together
+        CountDownLatch busy = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                busy.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        chip8.setVX(0xAB, 3);
+        chip8.setVX(0x1F, 5);
+        model.update(chip8);
+        chip8.setVX(0xFF, 5);
+        model.update(chip8);
+        busy.countDown();
+        SwingUtilities.invokeAndWait(() -> {
+        });
+        assertEquals(2, events.size());
+        assertEquals(3, events.get(1).getFirstRow());
+        assertEquals(5, events.get(1).getLastRow());
+        assertEquals("ab", model.getValueAt(3, 1));
+        assertEquals("ff", model.getValueAt(5, 1));
+        assertEquals("", model.getValueAt(16, 1));
+    }
+
+}
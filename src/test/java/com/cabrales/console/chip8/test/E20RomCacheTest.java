@@ -0,0 +1,89 @@
+package com.cabrales.console.chip8.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import com.cabrales.console.chip8.Chip8;
+import com.cabrales.console.chip8.util.Chip8Utils;
+import com.cabrales.console.chip8.util.RomCache;
+import com.cabrales.console.chip8.util.RomImage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * ROMs are read once into images which start machines of their own, and read
+ * again when they change on disk.
+ */
+public class E20RomCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCachedUntilChanged() throws IOException {
+        File rom = folder.newFile("rom.ch8");
+        Files.write(rom.toPath(), new byte[]{0x60, 0x01});
+        Files.setLastModifiedTime(rom.toPath(), FileTime.fromMillis(1_000_000));
+
+        RomCache cache = new RomCache();
+        RomImage image = cache.get(rom.toPath());
+        assertSame(image, cache.get(rom.toPath()));
+        assertEquals(1, cache.size());
+
+        Chip8 first = cache.createFromRom(rom.toPath());
+        Chip8 second = cache.createFromRom(rom.toPath());
+        first.cycle();
+        assertEquals(1, first.getV0());
+        assertEquals(0x200, second.getPc());
+        second.setVX(7, 0);
+        assertEquals(1, first.getV0());
+
+        Files.write(rom.toPath(), new byte[]{0x60, 0x02, 0x00, 0x00});
+        Files.setLastModifiedTime(rom.toPath(), FileTime.fromMillis(2_000_000));
+        RomImage changed = cache.get(rom.toPath());
+        assertNotSame(image, changed);
+        assertEquals(4, changed.getSize());
+        Chip8 third = changed.newMachine();
+        third.cycle();
+        assertEquals(2, third.getV0());
+    }
+
+    @Test
+    public void testTooBig() throws IOException {
+        File rom = folder.newFile("big.ch8");
+        Files.write(rom.toPath(), new byte[RomImage.MAX_ROM_SIZE]);
+        assertEquals(RomImage.MAX_ROM_SIZE, RomImage.read(rom.toPath()).getSize());
+
+        Files.write(rom.toPath(), new byte[RomImage.MAX_ROM_SIZE + 1]);
+        try {
+            Chip8Utils.createFromRom(rom.toPath());
+            fail("ROM should not fit");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testMappedFromArchive() throws IOException {
+        File archive = folder.newFile("roms.bin");
+        Files.write(archive.toPath(), new byte[]{0x11, 0x22, 0x60, 0x05, 0x33});
+
+        RomImage image = RomImage.map(archive.toPath(), 2, 2);
+        assertEquals(2, image.getSize());
+        Chip8 chip8 = image.newMachine();
+        chip8.cycle();
+        assertEquals(5, chip8.getV0());
+
+        try {
+            RomImage.map(archive.toPath(), 4, 2);
+            fail("ROM runs past the end of the archive");
+        } catch (IOException expected) {
+        }
+    }
+
+}
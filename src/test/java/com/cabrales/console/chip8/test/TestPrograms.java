@@ -0,0 +1,38 @@
+package com.cabrales.console.chip8.test;
+
+import com.cabrales.console.chip8.Chip8;
+
+/**
+ * Builds machines from programs written out as instructions, for the tests
+ * and the benchmarks.
+ */
+public final class TestPrograms {
+
+    private TestPrograms() {
+    }
+
+    /**
+     * @param program instructions loaded from 0x200 on
+     * @return a machine with the timers counted by wall clock time
+     */
+    public static Chip8 load(int[] program) {
+        byte[] memory = new byte[4096];
+        for (int i = 0; i < program.length; i++) {
+            memory[0x200 + 2 * i] = (byte) (program[i] >> 8);
+            memory[0x201 + 2 * i] = (byte) program[i];
+        }
+        return new Chip8(memory);
+    }
+
+    /**
+     * @param program instructions loaded from 0x200 on
+     * @param cyclesPerTick cycles per 60 hertz timer tick
+     * @return a machine with the timers counted in cycles
+     */
+    public static Chip8 load(int[] program, int cyclesPerTick) {
+        Chip8 chip8 = load(program);
+        chip8.setCyclesPerTick(cyclesPerTick);
+        return chip8;
+    }
+
+}